@@ -4,24 +4,33 @@ import hudson.Extension;
 import hudson.maven.AbstractMavenProject;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
-import hudson.model.Action;
 import hudson.model.ManagementLink;
 import hudson.security.Permission;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.cache.DeliveredReportCache;
+import org.axway.grapes.jenkins.cache.LastVersionCache;
+import org.axway.grapes.jenkins.client.CircuitBreaker;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
 import org.axway.grapes.jenkins.config.GrapesConfig;
-import org.axway.grapes.jenkins.notifications.NotificationHandler;
 import org.axway.grapes.jenkins.resend.ResendBuildAction;
+import org.axway.grapes.jenkins.resend.ResendBuildActionFactory;
+import org.axway.grapes.jenkins.resend.ResendJob;
+import org.axway.grapes.jenkins.resend.ResendJournal;
 import org.axway.grapes.jenkins.resend.ResendProjectAction;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Resend Root Action
@@ -35,7 +44,9 @@ public class AdministrateResendAction extends ManagementLink {
 
     private static final String ROOT_ACTION_ICON = "img/resend-icon.png";
 
-    private List<ResendProjectAction> resendActions = new ArrayList<ResendProjectAction>();
+    private volatile List<ResendProjectAction> resendActions = new ArrayList<ResendProjectAction>();
+
+    private volatile ResendJob job;
 
     @Override
     public String getIconFileName() {
@@ -57,16 +68,22 @@ public class AdministrateResendAction extends ManagementLink {
     }
 
     /**
-     * Refresh the resend actions
+     * Refresh the resend actions, only the builds that hold pending notifications are loaded (see {@link ResendJournal})
      */
     public void refresh(){
-        resendActions.clear();
-        for(AbstractMavenProject mavenProject: Jenkins.getInstance().getAllItems(AbstractMavenProject.class)){
-            final ResendProjectAction resendProjectAction = getAllResendActions(mavenProject);
+        final List<ResendProjectAction> pendingActions = new ArrayList<ResendProjectAction>();
+        for(Map.Entry<String, Set<Integer>> pendingBuilds: ResendJournal.get().getPendingBuilds().entrySet()){
+            final AbstractMavenProject<?, ?> mavenProject = Jenkins.getInstance().getItemByFullName(pendingBuilds.getKey(), AbstractMavenProject.class);
+            if(mavenProject == null){
+                continue;
+            }
+
+            final ResendProjectAction resendProjectAction = getAllResendActions(mavenProject, pendingBuilds.getValue());
             if(resendProjectAction != null){
-                resendActions.add(resendProjectAction);
+                pendingActions.add(resendProjectAction);
             }
         }
+        resendActions = pendingActions;
     }
 
     /**
@@ -85,7 +102,33 @@ public class AdministrateResendAction extends ManagementLink {
     }
 
     /**
-     *  Performs the notification on 'POST' action named "perform"
+     * Returns the circuit breakers of the configured Grapes servers by server name
+     *
+     * @return Map<String, CircuitBreaker>
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers(){
+        final Map<String, CircuitBreaker> circuitBreakers = new TreeMap<String, CircuitBreaker>();
+        final GrapesNotifierDescriptor descriptor = Jenkins.getInstance().getDescriptorByType(GrapesNotifierDescriptor.class);
+        if(descriptor != null && descriptor.getServers() != null){
+            for(GrapesConfig config: descriptor.getServers()){
+                circuitBreakers.put(config.getName(), GrapesClientRegistry.get(config).getCircuitBreaker());
+            }
+        }
+
+        return circuitBreakers;
+    }
+
+    /**
+     * Returns the last re-send job (null if none has been started)
+     *
+     * @return ResendJob
+     */
+    public ResendJob getJob() {
+        return job;
+    }
+
+    /**
+     *  Starts the re-send of the pending notifications in background on 'POST' action named "perform"
      *
      * @param req StaplerRequest
      * @param rsp StaplerResponse
@@ -95,61 +138,123 @@ public class AdministrateResendAction extends ManagementLink {
         // Only administrator can create a new site.
         Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
 
-        // TODO: display the progression
-
-        for(ResendProjectAction resendProjectAction: resendActions){
-            try {
-                final NotificationHandler notifHandler = new NotificationHandler(resendProjectAction.getConfig());
-                for(Map.Entry<AbstractBuild<?,?>, List<ResendBuildAction>> resendBuildAction: resendProjectAction.getResendActionPerBuild().entrySet()){
-                    notifHandler.send(resendBuildAction.getKey(), resendBuildAction.getValue());
-                }
-
-            } catch (Exception e ){
-                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to re-send notification: ", e);
+        synchronized (this) {
+            if(job == null || !job.isRunning()){
+                refresh();
+                job = ResendJob.start(resendActions);
             }
         }
 
-        refresh();
-
         return HttpRedirect.DOT;
     }
 
     /**
-     * Returns all the Grapes resend action of the build (never null, empty list if there is none)
+     *  Resumes a cancelled re-send on 'POST' action named "resume": the notifications still pending are re-sent
      *
-     * @param build AbstractBuild<?, ?>
-     * @return List<ResendBuildAction>
+     * @param req StaplerRequest
+     * @param rsp StaplerResponse
+     * @return HttpResponse
      */
-    private List<ResendBuildAction> getAllResendActions(final AbstractBuild<?, ?> build) {
-        final List<ResendBuildAction> resendActions = new ArrayList<ResendBuildAction>();
+    public HttpResponse doResume(final StaplerRequest req, final StaplerResponse rsp)  {
+        return do_perform(req, rsp);
+    }
 
-        for(Action transientAction: build.getTransientActions()){
+    /**
+     *  Cancels the re-send in progress on 'POST' action named "cancel"
+     *
+     * @param req StaplerRequest
+     * @param rsp StaplerResponse
+     * @return HttpResponse
+     */
+    public HttpResponse doCancel(final StaplerRequest req, final StaplerResponse rsp)  {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
 
-            if(transientAction instanceof ResendBuildAction){
-                resendActions.add((ResendBuildAction)transientAction);
-            }
+        final ResendJob currentJob = job;
+        if(currentJob != null){
+            currentJob.cancel();
         }
+        return HttpRedirect.DOT;
+    }
+
+    /**
+     *  Returns the progression of the re-send job as JSON
+     *
+     * @param req StaplerRequest
+     * @param rsp StaplerResponse
+     * @throws IOException
+     */
+    public void doProgress(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+        final ResendJob currentJob = job;
+        final JSONObject progress = currentJob == null ? new JSONObject() : currentJob.toJSON();
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(progress.toString());
+    }
 
-        return resendActions;
+    /**
+     *  Forgets the reports already delivered on 'POST' action named "clearDeliveredReports"
+     *  so that the next notifications are sent even if they did not change
+     *
+     * @param req StaplerRequest
+     * @param rsp StaplerResponse
+     * @return HttpResponse
+     */
+    public HttpResponse doClearDeliveredReports(final StaplerRequest req, final StaplerResponse rsp)  {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        DeliveredReportCache.clearAll();
+        return HttpRedirect.DOT;
     }
 
     /**
-     * Returns all the Grapes resend Action of a project (null if empty)
+     * Returns the cache of the last versions of the artifacts shared by the dependency reports
+     *
+     * @return LastVersionCache
+     */
+    public LastVersionCache getLastVersionCache() {
+        return LastVersionCache.get();
+    }
+
+    /**
+     * Forgets the last versions of the artifacts, the next dependency reports will look them up again
+     *
+     * @param req StaplerRequest
+     * @param rsp StaplerResponse
+     * @return HttpResponse
+     */
+    public HttpResponse doClearLastVersions(final StaplerRequest req, final StaplerResponse rsp)  {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        LastVersionCache.get().clear();
+        return HttpRedirect.DOT;
+    }
+
+    /**
+     * Returns all the Grapes resend Action of the given builds of a project (null if empty)
      *
      * @param project AbstractProject<?, ?>
+     * @param buildNumbers Set<Integer> numbers of the builds that hold pending notifications
      * @return ResendProjectAction
      */
-    private ResendProjectAction getAllResendActions(final AbstractProject<?, ?> project) {
+    private ResendProjectAction getAllResendActions(final AbstractProject<?, ?> project, final Set<Integer> buildNumbers) {
         final GrapesConfig config = GrapesPlugin.getGrapesConfiguration(project);
+        if(config == null){
+            return null;
+        }
+
         final Map<AbstractBuild<?,?> , List<ResendBuildAction>> resendBuildActions = new HashMap<AbstractBuild<?, ?>, List<ResendBuildAction>>();
-        for(Object run : project.getBuilds()){
-            if(run instanceof AbstractBuild){
-                final AbstractBuild<?,?> build = (AbstractBuild)run;
-                resendBuildActions.put(build, getAllResendActions(build));
+        for(Integer buildNumber : buildNumbers){
+            final AbstractBuild<?,?> build = project.getBuildByNumber(buildNumber);
+            if(build == null){
+                continue;
+            }
+
+            final List<ResendBuildAction> buildActions = ResendBuildActionFactory.getResendActions(build);
+            if(!buildActions.isEmpty()){
+                resendBuildActions.put(build, buildActions);
             }
         }
 
-        if(!resendBuildActions.isEmpty() &&  config != null){
+        if(!resendBuildActions.isEmpty()){
             return new ResendProjectAction(resendBuildActions, config);
         }
 
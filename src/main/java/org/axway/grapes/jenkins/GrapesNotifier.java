@@ -5,6 +5,8 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.maven.AbstractMavenProject;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSet;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
@@ -16,21 +18,36 @@ import hudson.tasks.Publisher;
 import hudson.util.FormValidation;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.cache.DeliveredReportCache;
+import org.axway.grapes.jenkins.cache.LastVersionCache;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
 import org.axway.grapes.jenkins.config.GrapesConfig;
 import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
 import org.axway.grapes.jenkins.notifications.GrapesNotificationDescriptor;
 import org.axway.grapes.jenkins.notifications.NotificationHandler;
+import org.axway.grapes.jenkins.notifications.NotificationScheduler;
 import org.axway.grapes.jenkins.notifications.buildinfo.BuildInfoNotification;
-import org.axway.grapes.utils.client.GrapesClient;
+import org.axway.grapes.jenkins.notifications.outbox.NotificationOutbox;
+import org.axway.grapes.jenkins.reports.AgentPublication;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+import org.axway.grapes.jenkins.reports.ReportStorage;
+import org.axway.grapes.jenkins.reports.ReportSummary;
+import org.axway.grapes.jenkins.reports.ReportTransfer;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -52,6 +69,9 @@ public class GrapesNotifier extends Notifier {
     // Manage the Build info
     private boolean manageBuildInfo;
 
+    // Manage the reports of all the Maven modules of the build
+    private boolean manageModuleReports;
+
     public Boolean getManageGrapesMavenPlugin() {
         return manageGrapesMavenPlugin;
     }
@@ -60,6 +80,10 @@ public class GrapesNotifier extends Notifier {
         return manageBuildInfo;
     }
 
+    public boolean getManageModuleReports() {
+        return manageModuleReports;
+    }
+
     public String getConfigName() {
         return configName;
     }
@@ -72,16 +96,25 @@ public class GrapesNotifier extends Notifier {
         this.manageBuildInfo = manageBuildInfo;
     }
 
+    public void setManageModuleReports(final boolean manageModuleReports) {
+        this.manageModuleReports = manageModuleReports;
+    }
+
     public void setConfigName(final String configName) {
         this.configName = configName;
     }
 
     // Fields in config.jelly must match the parameter names in the "DataBoundConstructor"
     @DataBoundConstructor
-    public GrapesNotifier(final String configName, final boolean manageGrapesMavenPlugin, final boolean manageBuildInfo) {
+    public GrapesNotifier(final String configName, final boolean manageGrapesMavenPlugin, final boolean manageBuildInfo, final boolean manageModuleReports) {
         this.configName = configName;
         this.manageGrapesMavenPlugin = manageGrapesMavenPlugin;
         this.manageBuildInfo = manageBuildInfo;
+        this.manageModuleReports = manageModuleReports;
+    }
+
+    public GrapesNotifier(final String configName, final boolean manageGrapesMavenPlugin, final boolean manageBuildInfo) {
+        this(configName, manageGrapesMavenPlugin, manageBuildInfo, false);
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
@@ -106,9 +139,26 @@ public class GrapesNotifier extends Notifier {
         }
 
         final PrintStream logger = listener.getLogger();
+        final GrapesConfig config = getConfig();
+
+        // Generate build info if necessary
+        Map<String, String> buildInfo = null;
+        if(manageBuildInfo){
+            try{
+                buildInfo = BuildInfoNotification.getBuildInfo(build, listener);
+                final FilePath buildInfoFile = GrapesPlugin.getBuildBuildInfoFile(build);
+                ReportStorage.write(buildInfoFile, JsonUtils.serialize(buildInfo));
+            } catch (Exception e) {
+                buildInfo = null;
+                logger.println("[GRAPES] Grapes build info generation aborted.");
+                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to generate build info file into the build folder.", e);
+            }
+        }
 
         // Save Grapes Maven report in build folder if necessary
         if(manageGrapesMavenPlugin){
+            // Shared by all the reports of the build, so they are posted within a single time budget
+            final AgentPublication publication = newAgentPublication(config, buildInfo, logger);
             try {
                 final FilePath moduleRoot = build.getModuleRoot();
                 final FilePath reportFile = moduleRoot.child("target/" + GrapesPlugin.GRAPES_WORKING_FOLDER + "/" + GrapesPlugin.GRAPES_MODULE_FILE);
@@ -116,7 +166,13 @@ public class GrapesNotifier extends Notifier {
                 // No module file, it should be a configuration error
                 if(reportFile.exists()){
                     final FilePath savedReport = GrapesPlugin.getBuildModuleFile(build);
-                    reportFile.copyTo(savedReport);
+                    final ReportSummary summary = ReportTransfer.transfer(reportFile, savedReport, publication);
+                    if(!summary.hasPayload()){
+                        logger.println("[GRAPES] Grapes Maven plugin report already saved in the build folder.");
+                    }
+                    if(publication != null){
+                        recordAgentPublication(config, summary, publication, savedReport, logger);
+                    }
 
                 }
                 else{
@@ -127,17 +183,9 @@ public class GrapesNotifier extends Notifier {
                 logger.println("[GRAPES] Grapes Maven plugin report backup aborted.");
                 GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to save the Maven report file into the build folder." , e);
             }
-        }
 
-        // Generate build info if necessary
-        if(manageBuildInfo){
-            try{
-                final Map<String, String> buildInfo = BuildInfoNotification.getBuildInfo(build, listener);
-                final FilePath buildInfoFile = GrapesPlugin.getBuildBuildInfoFile(build);
-                buildInfoFile.write(JsonUtils.serialize(buildInfo), null);
-            } catch (Exception e) {
-                logger.println("[GRAPES] Grapes build info generation aborted.");
-                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to generate build info file into the build folder.", e);
+            if(manageModuleReports && build.getProject() instanceof MavenModuleSet){
+                saveModuleReports(build, config, publication, logger);
             }
         }
 
@@ -147,24 +195,150 @@ public class GrapesNotifier extends Notifier {
             return true;
         }
 
-        final GrapesConfig config = getConfig();
         logger.println("[GRAPES] Connection to Grapes");
         logger.println("[GRAPES] Host: " + config.getHost());
         logger.println("[GRAPES] Port: " + config.getPort());
 
-        final NotificationHandler notifHandler = new NotificationHandler(config);
-        for(int i = 0 ; i < notifications.size() ; i++){
-            try{
-                notifHandler.send(notifications.get(i),build);
-                int count = i+1;
-                logger.println("[GRAPES] Grapes notification " + count + "/" + notifications.size() + " has been performed successfully");
+        // Hand the notifications over to the outbox so the build does not wait for Grapes server
+        try{
+            NotificationOutbox.getInstance().enqueue(build, config, notifications, logger);
+            logger.println("[GRAPES] " + notifications.size() + " Grapes notification(s) queued for delivery");
+        } catch (Exception e) {
+            logger.println("[GRAPES] Failed to queue Grapes notifications, sending them now.");
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to queue Grapes notifications:", e);
+            send(build, config, notifications, logger);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the publication of the reports by the agent, if the server configuration requires it and the server is available.
+     * While the circuit breaker of the server is open, the master queues the notifications instead.
+     *
+     * @param config GrapesConfig
+     * @param buildInfo Map<String, String> (null if there is none)
+     * @param logger PrintStream
+     * @return AgentPublication (null if the agent should not post the reports)
+     */
+    private AgentPublication newAgentPublication(final GrapesConfig config, final Map<String, String> buildInfo, final PrintStream logger) {
+        if(config == null || !config.isPublishFromAgent()){
+            return null;
+        }
+        if(GrapesClientRegistry.get(config).getCircuitBreaker().isOpen()){
+            logger.println("[GRAPES] Grapes server is unavailable, the reports will be sent by the master.");
+            return null;
+        }
+
+        final GrapesNotifierDescriptor descriptor = (GrapesNotifierDescriptor) getDescriptor();
+        return new AgentPublication(config, buildInfo, descriptor.getNotificationBudget());
+    }
+
+    /**
+     * Saves in the build folder the Grapes Maven plugin reports of all the Maven modules of the build
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param config GrapesConfig
+     * @param publication AgentPublication (null if the agent should not post the reports)
+     * @param logger PrintStream
+     */
+    private static void saveModuleReports(final AbstractBuild<?, ?> build, final GrapesConfig config, final AgentPublication publication, final PrintStream logger) {
+        try{
+            final Map<String, FilePath> targets = new LinkedHashMap<String, FilePath>();
+            for(MavenModule module: ((MavenModuleSet) build.getProject()).getModules()){
+                // the root module report is handled on its own
+                if(StringUtils.isNotEmpty(module.getRelativePath())){
+                    final String reportPath = module.getRelativePath() + "/target/" + GrapesPlugin.GRAPES_WORKING_FOLDER + "/" + GrapesPlugin.GRAPES_MODULE_FILE;
+                    targets.put(reportPath, GrapesPlugin.getBuildModuleFile(build, module.getRelativePath()));
+                }
+            }
+            if(targets.isEmpty()){
+                return;
+            }
+
+            final ReportTransfer.ModuleReports reports = ReportTransfer.transferAll(build.getModuleRoot(), targets, publication);
+            logger.println("[GRAPES] " + reports.getSummaries().size() + " Grapes Maven plugin report(s) of Maven modules saved in the build folder.");
+
+            for(Map.Entry<String, String> error: reports.getErrors().entrySet()){
+                logger.println("[GRAPES] Grapes Maven plugin report " + error.getKey() + " backup aborted.");
+                GrapesPlugin.getLogger().severe("[GRAPES] Failed to save " + error.getKey() + " into the build folder: " + error.getValue());
+            }
+
+            if(publication != null){
+                for(Map.Entry<String, ReportSummary> summary: reports.getSummaries().entrySet()){
+                    recordAgentPublication(config, summary.getValue(), publication, targets.get(summary.getKey()), logger);
+                }
+            }
+        } catch (Exception e) {
+            logger.println("[GRAPES] Grapes Maven plugin reports of Maven modules backup aborted.");
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to save the reports of Maven modules into the build folder." , e);
+        }
+    }
+
+    /**
+     * Marks what the agent has posted as delivered, so the master does not post it again.
+     * What the agent failed to post is sent by the master with the other notifications.
+     *
+     * @param config GrapesConfig
+     * @param summary ReportSummary
+     * @param publication AgentPublication
+     * @param savedReport FilePath the report saved in the build folder
+     * @param logger PrintStream
+     */
+    private static void recordAgentPublication(final GrapesConfig config, final ReportSummary summary, final AgentPublication publication, final FilePath savedReport, final PrintStream logger) {
+        final ModuleHeader header = summary.getHeader();
+        final DeliveredReportCache deliveredReports = DeliveredReportCache.get(config);
+
+        if(summary.isModuleDelivered()){
+            deliveredReports.delivered(NotificationType.POST_MODULE, header.getName(), header.getVersion(), summary.getDigest());
+            logger.println("[GRAPES] Module " + header.getName() + " in version " + header.getVersion() + " posted by the agent.");
+
+            // The last versions of the artifacts of the module may have changed
+            try {
+                LastVersionCache.get().invalidate(GrapesClientRegistry.get(config).getServerUrl(), GrapesPlugin.getModule(savedReport));
             } catch (Exception e) {
-                logger.println("[GRAPES] One Grapes notification has been postpone. Check your Grapes server configuration & if the Grapes server is available");
-                GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Grapes Notification failed:", e);
+                GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to read the module report " + savedReport.getRemote(), e);
             }
         }
+        if(summary.isBuildInfoDelivered()){
+            deliveredReports.delivered(NotificationType.POST_MODULE_BUILD_INFO, header.getName(), header.getVersion(),
+                    NotificationHandler.getBuildInfoHash(publication.getBuildInfo()));
+            logger.println("[GRAPES] Build info of " + header.getName() + " in version " + header.getVersion() + " posted by the agent.");
+        }
+        if(summary.getPublicationError() != null){
+            logger.println("[GRAPES] The agent failed to post to Grapes server, the master will send the notifications.");
+            GrapesPlugin.getLogger().warning("[GRAPES] Agent publication failed: " + summary.getPublicationError());
+        }
+    }
 
-        return true;
+    /**
+     * Sends the notifications of a build synchronously
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param config GrapesConfig
+     * @param notifications List<GrapesNotification>
+     * @param logger PrintStream
+     */
+    private void send(final AbstractBuild<?, ?> build, final GrapesConfig config, final List<GrapesNotification> notifications, final PrintStream logger) {
+        final GrapesNotifierDescriptor descriptor = (GrapesNotifierDescriptor) getDescriptor();
+        final NotificationHandler notifHandler = new NotificationHandler(config, false, descriptor.newNotificationDeadline());
+        try{
+            new NotificationScheduler(notifHandler).send(build, notifications, new NotificationScheduler.Listener() {
+                @Override
+                public void onSent(final int index, final GrapesNotification notification) {
+                    logger.println("[GRAPES] Grapes notification " + (index + 1) + "/" + notifications.size() + " has been performed successfully");
+                }
+
+                @Override
+                public void onFailed(final int index, final GrapesNotification notification, final Exception cause) {
+                    logger.println("[GRAPES] One Grapes notification has been postpone. Check your Grapes server configuration & if the Grapes server is available");
+                    GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Grapes Notification failed:", cause);
+                }
+            });
+        } catch (InterruptedException e) {
+            logger.println("[GRAPES] Grapes notification interrupted.");
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -187,11 +361,7 @@ public class GrapesNotifier extends Notifier {
         final List<GrapesNotification> notifications = new ArrayList<GrapesNotification>();
 
         for(GrapesNotificationDescriptor notificationDescriptor: GrapesNotificationDescriptor.all()){
-            final GrapesNotification notification = notificationDescriptor.createAutoInstance(build);
-
-            if(notification != null){
-                notifications.add(notification);
-            }
+            notifications.addAll(notificationDescriptor.createAutoInstances(build));
         }
 
         return notifications;
@@ -207,10 +377,77 @@ public class GrapesNotifier extends Notifier {
     @Extension
     public static final class GrapesNotifierDescriptor extends BuildStepDescriptor<Publisher> {
 
+        public static final int DEFAULT_NOTIFICATION_BUDGET = 120;
+
         private volatile List<GrapesConfig> servers;
 
+        // Maximum time in seconds spent to send the notifications of a build
+        private int notificationBudget = DEFAULT_NOTIFICATION_BUDGET;
+
+        // Pipe module reports to Grapes server instead of loading them in memory
+        private boolean streamModuleUpload = false;
+
+        // Write the reports of the build folders gzip-compressed
+        private boolean compressReports = false;
+
+        // Store each distinct module report once, the build folders keep references
+        private boolean deduplicateReports = false;
+
+        // Re-send the pending notifications in background
+        private boolean automaticResend = true;
+
         public GrapesNotifierDescriptor() {
             load();
+            GrapesClientRegistry.reset(servers);
+        }
+
+        public boolean getStreamModuleUpload() {
+            return streamModuleUpload;
+        }
+
+        public void setStreamModuleUpload(final boolean streamModuleUpload) {
+            this.streamModuleUpload = streamModuleUpload;
+        }
+
+        public boolean getCompressReports() {
+            return compressReports;
+        }
+
+        public void setCompressReports(final boolean compressReports) {
+            this.compressReports = compressReports;
+        }
+
+        public boolean getDeduplicateReports() {
+            return deduplicateReports;
+        }
+
+        public void setDeduplicateReports(final boolean deduplicateReports) {
+            this.deduplicateReports = deduplicateReports;
+        }
+
+        public boolean getAutomaticResend() {
+            return automaticResend;
+        }
+
+        public void setAutomaticResend(final boolean automaticResend) {
+            this.automaticResend = automaticResend;
+        }
+
+        public int getNotificationBudget() {
+            return notificationBudget > 0 ? notificationBudget : DEFAULT_NOTIFICATION_BUDGET;
+        }
+
+        public void setNotificationBudget(final int notificationBudget) {
+            this.notificationBudget = notificationBudget;
+        }
+
+        /**
+         * Returns a new deadline for the notifications of a build
+         *
+         * @return Deadline
+         */
+        public Deadline newNotificationDeadline() {
+            return Deadline.after(getNotificationBudget(), TimeUnit.SECONDS);
         }
 
         public List<GrapesConfig> getServers() {
@@ -261,7 +498,8 @@ public class GrapesNotifier extends Notifier {
             }
 
             save();
-            
+            GrapesClientRegistry.reset(servers);
+
             return true;
         }
 
@@ -314,10 +552,13 @@ public class GrapesNotifier extends Notifier {
          * @param host String
          * @param port String
          * @param timeout String
+         * @param maxConnections String
          * @return
          */
-        public FormValidation doTestConnection(@QueryParameter final String host, @QueryParameter final String port, @QueryParameter final String timeout) {
-            final GrapesClient client = new GrapesClient(host, port);
+        public FormValidation doTestConnection(@QueryParameter final String host, @QueryParameter final String port, @QueryParameter final String timeout,
+                                               @QueryParameter final String requestTimeout, @QueryParameter final String maxConnections) {
+            // Throwaway client: the values tested in the form are not necessarily saved
+            final PooledGrapesClient client = new PooledGrapesClient(host, port, 1, NumberUtils.toInt(timeout), NumberUtils.toInt(requestTimeout));
 
             if (client.isServerAvailable()) {
                 return FormValidation.ok("Success.");
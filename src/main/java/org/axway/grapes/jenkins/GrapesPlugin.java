@@ -1,19 +1,34 @@
 package org.axway.grapes.jenkins;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import hudson.FilePath;
 import hudson.Plugin;
 import hudson.PluginWrapper;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Hudson;
 import hudson.tasks.Publisher;
+import org.apache.commons.io.IOUtils;
 import org.axway.grapes.commons.datamodel.Module;
 import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.cache.DeliveredReportCache;
+import org.axway.grapes.jenkins.cache.ModuleCache;
 import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+import org.axway.grapes.jenkins.reports.ReportStorage;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -30,6 +45,8 @@ public class GrapesPlugin extends Plugin {
 
     public static final String MODULE_REPORT_FILE = "module.json";
 
+    public static final String MAVEN_MODULES_FOLDER = "modules";
+
     public static final String BUILD_INFO_REPORT_FILE = "buildInfo.json";
 
     public static final String BUILD_INFO_SCM_TYPE = "scm-type";
@@ -62,6 +79,21 @@ public class GrapesPlugin extends Plugin {
 
     public static final String GRAPES_MODULE_FILE = "module.json";
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ModuleCache.Parser MODULE_PARSER = new ModuleCache.Parser() {
+        @Override
+        public Module parse(final FilePath moduleFile) throws IOException, InterruptedException {
+            final String serializedModule= ReportStorage.readToString(moduleFile);
+            return JsonUtils.unserializeModule(serializedModule);
+        }
+    };
+
+    @Override
+    public void stop() throws Exception {
+        DeliveredReportCache.saveAll();
+    }
+
     /**
      * Returns Grapes Jenkins plugin logger
      *
@@ -106,6 +138,56 @@ public class GrapesPlugin extends Plugin {
         return reportFolder.child(MODULE_REPORT_FILE);
     }
 
+    /**
+     * Returns the report file path of a Maven module of the build
+     *
+     * @param build AbstractBuild
+     * @param relativePath String path of the module relative to the root module
+     * @return FilePath
+     */
+    public static FilePath getBuildModuleFile(final AbstractBuild<?, ?> build, final String relativePath) {
+        final FilePath modulesFolder = getBuildReportFolder(build).child(MAVEN_MODULES_FOLDER);
+        return modulesFolder.child(Util.rawEncode(relativePath)).child(MODULE_REPORT_FILE);
+    }
+
+    /**
+     * Returns all the module report files of the build: the report of the root module first,
+     * then the reports of the Maven modules (empty list if there is none)
+     *
+     * @param build AbstractBuild
+     * @return List<FilePath>
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static List<FilePath> getBuildModuleFiles(final AbstractBuild<?, ?> build) throws IOException, InterruptedException {
+        final List<FilePath> moduleFiles = new ArrayList<FilePath>();
+
+        final FilePath rootModuleFile = getBuildModuleFile(build);
+        if(rootModuleFile.exists()){
+            moduleFiles.add(rootModuleFile);
+        }
+
+        final FilePath modulesFolder = getBuildReportFolder(build).child(MAVEN_MODULES_FOLDER);
+        if(modulesFolder.exists()){
+            final List<FilePath> moduleFolders = modulesFolder.listDirectories();
+            Collections.sort(moduleFolders, new Comparator<FilePath>() {
+                @Override
+                public int compare(final FilePath folder1, final FilePath folder2) {
+                    return folder1.getName().compareTo(folder2.getName());
+                }
+            });
+
+            for(FilePath moduleFolder: moduleFolders){
+                final FilePath moduleFile = moduleFolder.child(MODULE_REPORT_FILE);
+                if(moduleFile.exists()){
+                    moduleFiles.add(moduleFile);
+                }
+            }
+        }
+
+        return moduleFiles;
+    }
+
     /**
      * Returns the buildInfo build report file path
      *
@@ -118,7 +200,8 @@ public class GrapesPlugin extends Plugin {
     }
 
     /**
-     * Un-serialize a Module from Json file
+     * Un-serialize a Module from Json file.
+     * <p>The parsed modules are shared through the {@link ModuleCache} while the build is running.</p>
      *
      * @param moduleFile File
      * @return Module
@@ -127,14 +210,91 @@ public class GrapesPlugin extends Plugin {
      */
     public static Module getModule(final FilePath moduleFile) throws IOException, InterruptedException {
         if (moduleFile.exists()) {
-            final String serializedModule= moduleFile.readToString();
-            return JsonUtils.unserializeModule(serializedModule);
+            return ModuleCache.get(moduleFile, MODULE_PARSER);
         }
 
         getLogger().severe("[GRAPES] Wrong module report path: " + moduleFile.toURI().getPath());
         throw new IOException("[GRAPES] Failed to get report.");
     }
 
+    /**
+     * Returns the name and the version of the module of a report.
+     * <p>The header provided by the agent that produced the report is used when it is known.
+     * Otherwise the report is read as a stream that stops as soon as the top-level name and version are found.
+     * If they cannot be found this way, the whole module is parsed.</p>
+     *
+     * @param moduleFile FilePath
+     * @return ModuleHeader
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static ModuleHeader getModuleHeader(final FilePath moduleFile) throws IOException, InterruptedException {
+        if (!moduleFile.exists()) {
+            getLogger().severe("[GRAPES] Wrong module report path: " + moduleFile.toURI().getPath());
+            throw new IOException("[GRAPES] Failed to get report.");
+        }
+
+        ModuleHeader header = ModuleCache.getHeader(moduleFile);
+        if(header != null){
+            return header;
+        }
+
+        final InputStream report = ReportStorage.read(moduleFile);
+        try {
+            header = readModuleHeader(report);
+        } catch (IOException e) {
+            getLogger().log(Level.FINE, "[GRAPES] Failed to stream the header of " + moduleFile.getRemote(), e);
+        } finally {
+            IOUtils.closeQuietly(report);
+        }
+
+        if(header == null){
+            final Module module = getModule(moduleFile);
+            header = new ModuleHeader(module.getName(), module.getVersion());
+        }
+        return header;
+    }
+
+    /**
+     * Reads the top-level name and version of a module report, stops reading as soon as both are found
+     *
+     * @param report InputStream
+     * @return ModuleHeader (null if the report does not contain them)
+     * @throws IOException
+     */
+    public static ModuleHeader readModuleHeader(final InputStream report) throws IOException {
+        final JsonParser parser = JSON_FACTORY.createJsonParser(report);
+        try {
+            if(parser.nextToken() != JsonToken.START_OBJECT){
+                return null;
+            }
+
+            String name = null;
+            String version = null;
+            while(name == null || version == null){
+                if(parser.nextToken() != JsonToken.FIELD_NAME){
+                    return null;
+                }
+
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if("name".equals(field) && value == JsonToken.VALUE_STRING){
+                    name = parser.getText();
+                }
+                else if("version".equals(field) && value == JsonToken.VALUE_STRING){
+                    version = parser.getText();
+                }
+                else{
+                    parser.skipChildren();
+                }
+            }
+
+            return new ModuleHeader(name, version);
+        } finally {
+            parser.close();
+        }
+    }
+
     /**
      * Un-serialize a BuildInfo from Json file
      *
@@ -145,7 +305,7 @@ public class GrapesPlugin extends Plugin {
      */
     public static Map<String,String> getBuildInfo(final FilePath buildInfoFile) throws IOException, InterruptedException {
         if (buildInfoFile.exists()) {
-            final String serializedBuildInfo= buildInfoFile.readToString();
+            final String serializedBuildInfo= ReportStorage.readToString(buildInfoFile);
             return JsonUtils.unserializeBuildInfo(serializedBuildInfo);
         }
 
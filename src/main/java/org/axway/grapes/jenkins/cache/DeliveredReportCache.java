@@ -0,0 +1,242 @@
+package org.axway.grapes.jenkins.cache;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.PeriodicWork;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Delivered Report Cache
+ *
+ * <p>Remembers, per Grapes server, the hash of the last report successfully delivered for a module, a version and a kind of notification.
+ * It makes the notification handler able to skip the re-posting of identical reports.
+ * Entries are evicted in least-recently-used order and expire after a while.
+ * The cache is stored in JENKINS_HOME to survive restarts.</p>
+ *
+ * @author jdcoffre
+ */
+public class DeliveredReportCache {
+
+    public static final int MAX_ENTRIES = Integer.getInteger(DeliveredReportCache.class.getName() + ".maxEntries", 10000);
+
+    public static final long TTL = TimeUnit.HOURS.toMillis(Integer.getInteger(DeliveredReportCache.class.getName() + ".ttlHours", 24 * 7));
+
+    private static final String CACHE_FILE_PREFIX = "delivered-";
+
+    private static final String SEPARATOR = "|";
+
+    private static final Map<String, DeliveredReportCache> CACHES = new HashMap<String, DeliveredReportCache>();
+
+    private final File file;
+
+    private final long ttl;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private boolean dirty = false;
+
+    DeliveredReportCache(final File file, final int maxEntries, final long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Returns the cache of a Grapes server
+     *
+     * @param config GrapesConfig
+     * @return DeliveredReportCache
+     */
+    public static DeliveredReportCache get(final GrapesConfig config) {
+        final String serverId = config.getHost() + "_" + config.getPort();
+        synchronized (CACHES) {
+            DeliveredReportCache cache = CACHES.get(serverId);
+            if(cache == null){
+                cache = new DeliveredReportCache(new File(getCacheFolder(), CACHE_FILE_PREFIX + Util.rawEncode(serverId)), MAX_ENTRIES, TTL);
+                CACHES.put(serverId, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Forgets all the delivered reports so they will be sent again, including the caches of the servers not used since startup
+     */
+    public static void clearAll() {
+        synchronized (CACHES) {
+            for(DeliveredReportCache cache: CACHES.values()){
+                cache.clear();
+            }
+
+            final File[] files = getCacheFolder().listFiles();
+            if(files != null){
+                for(File file: files){
+                    if(file.getName().startsWith(CACHE_FILE_PREFIX) && file.isFile() && !file.delete()){
+                        GrapesPlugin.getLogger().warning("[GRAPES] Failed to delete delivered report cache " + file.getPath());
+                    }
+                }
+            }
+        }
+    }
+
+    private static File getCacheFolder() {
+        return new File(Jenkins.getInstance().getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER);
+    }
+
+    /**
+     * Writes all the modified caches on disk
+     */
+    public static void saveAll() {
+        for(DeliveredReportCache cache: getCaches()){
+            cache.save();
+        }
+    }
+
+    private static List<DeliveredReportCache> getCaches() {
+        synchronized (CACHES) {
+            return new ArrayList<DeliveredReportCache>(CACHES.values());
+        }
+    }
+
+    /**
+     * Checks if a report has already been delivered
+     *
+     * @param type NotificationType
+     * @param moduleName String
+     * @param moduleVersion String
+     * @param hash String the hash of the payload
+     * @return boolean
+     */
+    public synchronized boolean isDelivered(final NotificationType type, final String moduleName, final String moduleVersion, final String hash) {
+        final String key = getKey(type, moduleName, moduleVersion);
+        final Entry entry = entries.get(key);
+        if(entry == null){
+            return false;
+        }
+        if(System.currentTimeMillis() - entry.timestamp > ttl){
+            entries.remove(key);
+            dirty = true;
+            return false;
+        }
+        return entry.hash.equals(hash);
+    }
+
+    /**
+     * Records a report that has been successfully delivered
+     *
+     * @param type NotificationType
+     * @param moduleName String
+     * @param moduleVersion String
+     * @param hash String the hash of the payload
+     */
+    public synchronized void delivered(final NotificationType type, final String moduleName, final String moduleVersion, final String hash) {
+        entries.put(getKey(type, moduleName, moduleVersion), new Entry(hash, System.currentTimeMillis()));
+        dirty = true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    private static String getKey(final NotificationType type, final String moduleName, final String moduleVersion) {
+        return type.name() + SEPARATOR + moduleName + SEPARATOR + moduleVersion;
+    }
+
+    private synchronized void load() {
+        if(!file.exists()){
+            return;
+        }
+
+        BufferedReader reader = null;
+        try{
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null){
+                // line format: <timestamp>|<hash>|<key>
+                final String[] fields = line.split("\\" + SEPARATOR, 3);
+                if(fields.length == 3){
+                    entries.put(fields[2], new Entry(fields[1], Long.parseLong(fields[0])));
+                }
+            }
+        } catch (Exception e){
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to load delivered report cache " + file.getPath(), e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    synchronized void save() {
+        if(!dirty){
+            return;
+        }
+
+        try{
+            file.getParentFile().mkdirs();
+            // Written aside then renamed, a crash does not leave a truncated cache
+            final AtomicFileWriter writer = new AtomicFileWriter(file);
+            try{
+                for(Map.Entry<String, Entry> entry: entries.entrySet()){
+                    writer.write(entry.getValue().timestamp + SEPARATOR + entry.getValue().hash + SEPARATOR + entry.getKey() + "\n");
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+            dirty = false;
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to save delivered report cache " + file.getPath(), e);
+        }
+    }
+
+    private static class Entry {
+        private final String hash;
+        private final long timestamp;
+
+        private Entry(final String hash, final long timestamp) {
+            this.hash = hash;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Periodically writes the modified caches on disk
+     */
+    @Extension
+    public static class DeliveredReportCacheSaver extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            saveAll();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.axway.grapes.jenkins.cache;
+
+import org.axway.grapes.commons.datamodel.Artifact;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.commons.utils.ModuleUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last Version Cache
+ *
+ * <p>Remembers, per Grapes server, the last version of the artifacts looked up for the dependency reports.
+ * The builds that depend on the same artifacts share the answers of the Grapes server.
+ * The last version does not depend on the version of the artifact that is looked up:
+ * the entries are identified by the coordinates of the artifact without version.
+ * Entries are evicted in least-recently-used order and expire after a while.
+ * The last versions of the artifacts of a module are forgotten when this Jenkins posts the module, whatever its version.</p>
+ *
+ * @author jdcoffre
+ */
+public final class LastVersionCache {
+
+    public static final int MAX_ENTRIES = Integer.getInteger(LastVersionCache.class.getName() + ".maxEntries", 10000);
+
+    public static final long TTL = TimeUnit.MINUTES.toMillis(Integer.getInteger(LastVersionCache.class.getName() + ".ttlMinutes", 10));
+
+    private static final String SEPARATOR = "|";
+
+    private static final String GAVC_SEPARATOR = ":";
+
+    private static final LastVersionCache INSTANCE = new LastVersionCache(MAX_ENTRIES, TTL);
+
+    private final long ttl;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    LastVersionCache(final int maxEntries, final long ttl) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static LastVersionCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the last version of an artifact known by a Grapes server
+     *
+     * @param serverUrl String
+     * @param gavc String
+     * @return String the last version, null if it is not in the cache
+     */
+    public String getLastVersion(final String serverUrl, final String gavc) {
+        final String key = getKey(serverUrl, gavc);
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if(entry != null && System.currentTimeMillis() - entry.timestamp <= ttl){
+                hits.incrementAndGet();
+                return entry.lastVersion;
+            }
+            if(entry != null){
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Records the last version of an artifact returned by a Grapes server
+     *
+     * @param serverUrl String
+     * @param gavc String
+     * @param lastVersion String
+     */
+    public void setLastVersion(final String serverUrl, final String gavc, final String lastVersion) {
+        if(lastVersion == null){
+            return;
+        }
+        synchronized (entries) {
+            entries.put(getKey(serverUrl, gavc), new Entry(lastVersion, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Forgets the last versions of the artifacts of a module that has been posted to a Grapes server
+     *
+     * @param serverUrl String
+     * @param module Module
+     */
+    public void invalidate(final String serverUrl, final Module module) {
+        if(module == null){
+            return;
+        }
+        synchronized (entries) {
+            for(Artifact artifact: ModuleUtils.getAllArtifacts(module)){
+                entries.remove(getKey(serverUrl, artifact.getGavc()));
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static String getKey(final String serverUrl, final String gavc) {
+        return serverUrl + SEPARATOR + getCoordinates(gavc);
+    }
+
+    /**
+     * Removes the version from a gavc (groupId:artifactId:version:classifier:extension)
+     *
+     * @param gavc String
+     * @return String groupId:artifactId:classifier:extension
+     */
+    static String getCoordinates(final String gavc) {
+        final String[] fields = gavc.split(GAVC_SEPARATOR, -1);
+        if(fields.length < 3){
+            return gavc;
+        }
+
+        final StringBuilder coordinates = new StringBuilder(fields[0]).append(GAVC_SEPARATOR).append(fields[1]);
+        for(int i = 3; i < fields.length; i++){
+            coordinates.append(GAVC_SEPARATOR).append(fields[i]);
+        }
+        return coordinates.toString();
+    }
+
+    private static class Entry {
+        private final String lastVersion;
+        private final long timestamp;
+
+        private Entry(final String lastVersion, final long timestamp) {
+            this.lastVersion = lastVersion;
+            this.timestamp = timestamp;
+        }
+    }
+}
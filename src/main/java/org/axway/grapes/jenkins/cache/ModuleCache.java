@@ -0,0 +1,267 @@
+package org.axway.grapes.jenkins.cache;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.listeners.RunListener;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+import org.axway.grapes.jenkins.reports.ReportStorage;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Module Cache
+ *
+ * <p>Keeps the modules parsed from the reports of the running builds, so the notification descriptors,
+ * the notification handler and the dependency report share a single parsing of each report.
+ * The header and the digest of a report computed by the agent that produced it are kept as well,
+ * so the master does not have to read the report again to get them.
+ * An entry is identified by the path of the report and its last modification date.</p>
+ * <p>The parsed modules are bounded by the total size of their reports: the least recently used ones are dropped first
+ * and parsed again on demand. They are released when the build is completed, while the headers and the digests,
+ * which are small, stay until they are evicted so the notifications sent later by the outbox still use them.</p>
+ *
+ * @author jdcoffre
+ */
+public final class ModuleCache {
+
+    public static final int MAX_ENTRIES = Integer.getInteger(ModuleCache.class.getName() + ".maxEntries", 1000);
+
+    // Total size of the reports whose parsed module is kept, in bytes
+    public static final long MAX_MODULE_WEIGHT = 1024L * Integer.getInteger(ModuleCache.class.getName() + ".maxModuleKBytes", 16 * 1024);
+
+    // The size of a compressed report underestimates the size of its module
+    private static final int COMPRESSION_RATIO = 10;
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+            if(size() > MAX_ENTRIES){
+                dropModule(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Guarded by ENTRIES
+    private static long moduleWeight = 0;
+
+    private ModuleCache() {
+        // Hide utility class constructor
+    }
+
+    /**
+     * Returns the module of a report, parses it only if it is not cached yet or if the report has changed
+     *
+     * @param moduleFile FilePath
+     * @param parser Parser the parsing to use on cache miss
+     * @return Module
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static Module get(final FilePath moduleFile, final Parser parser) throws IOException, InterruptedException {
+        final String path = moduleFile.getRemote();
+        final long lastModified = moduleFile.lastModified();
+
+        Entry entry;
+        synchronized (ENTRIES) {
+            entry = getEntry(path, lastModified);
+            if(entry != null && entry.module != null){
+                return entry.module;
+            }
+        }
+
+        final Module module = parser.parse(moduleFile);
+        final long weight = getWeight(moduleFile);
+        if(weight > MAX_MODULE_WEIGHT){
+            return module;
+        }
+
+        synchronized (ENTRIES) {
+            entry = getEntry(path, lastModified);
+            if(entry == null){
+                entry = new Entry(lastModified);
+                put(path, entry);
+            }
+            if(entry.module == null){
+                entry.module = module;
+                entry.weight = weight;
+                moduleWeight += weight;
+                trimModules(entry);
+            }
+            return entry.module;
+        }
+    }
+
+    /**
+     * Stores the header and the digest of a report computed by the agent that produced it
+     *
+     * @param moduleFile FilePath the copy of the report on the master
+     * @param header ModuleHeader
+     * @param digest String
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void prime(final FilePath moduleFile, final ModuleHeader header, final String digest) throws IOException, InterruptedException {
+        final String path = moduleFile.getRemote();
+        final long lastModified = moduleFile.lastModified();
+
+        synchronized (ENTRIES) {
+            Entry entry = getEntry(path, lastModified);
+            if(entry == null){
+                entry = new Entry(lastModified);
+                put(path, entry);
+            }
+            entry.header = header;
+            entry.digest = digest;
+        }
+    }
+
+    /**
+     * Returns the header of a report if it is known
+     *
+     * @param moduleFile FilePath
+     * @return ModuleHeader (null if the header has not been provided for the current version of the report)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static ModuleHeader getHeader(final FilePath moduleFile) throws IOException, InterruptedException {
+        final long lastModified = moduleFile.lastModified();
+        synchronized (ENTRIES) {
+            final Entry entry = getEntry(moduleFile.getRemote(), lastModified);
+            return entry == null ? null : entry.header;
+        }
+    }
+
+    /**
+     * Returns the digest of a report, computes it only if it has not been provided for the current version of the report
+     *
+     * @param moduleFile FilePath
+     * @return String
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static String getDigest(final FilePath moduleFile) throws IOException, InterruptedException {
+        final long lastModified = moduleFile.lastModified();
+        synchronized (ENTRIES) {
+            final Entry entry = getEntry(moduleFile.getRemote(), lastModified);
+            if(entry != null && entry.digest != null){
+                return entry.digest;
+            }
+        }
+        return ReportStorage.digest(moduleFile);
+    }
+
+    private static Entry getEntry(final String path, final long lastModified) {
+        final Entry entry = ENTRIES.get(path);
+        return entry != null && entry.lastModified == lastModified ? entry : null;
+    }
+
+    private static void put(final String path, final Entry entry) {
+        final Entry previous = ENTRIES.put(path, entry);
+        if(previous != null){
+            dropModule(previous);
+        }
+    }
+
+    private static void dropModule(final Entry entry) {
+        if(entry.module != null){
+            entry.module = null;
+            moduleWeight -= entry.weight;
+            entry.weight = 0;
+        }
+    }
+
+    /**
+     * Drops the least recently used modules until their weight fits in the budget
+     *
+     * @param kept Entry the entry that has just been filled
+     */
+    private static void trimModules(final Entry kept) {
+        final Iterator<Entry> entries = ENTRIES.values().iterator();
+        while(moduleWeight > MAX_MODULE_WEIGHT && entries.hasNext()){
+            final Entry entry = entries.next();
+            if(entry != kept){
+                dropModule(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the weight of the module of a report: the size of the report
+     *
+     * @param moduleFile FilePath
+     * @return long
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static long getWeight(final FilePath moduleFile) throws IOException, InterruptedException {
+        final FilePath content = ReportStorage.resolve(moduleFile);
+        final long length = content.length();
+        return ReportStorage.isPlain(content) ? length : length * COMPRESSION_RATIO;
+    }
+
+    /**
+     * Releases the modules parsed from the reports stored in a folder, their headers and digests are kept
+     *
+     * @param folder FilePath
+     */
+    public static void release(final FilePath folder) {
+        final String prefix = folder.getRemote();
+        synchronized (ENTRIES) {
+            for(Map.Entry<String, Entry> entry: ENTRIES.entrySet()){
+                if(entry.getKey().startsWith(prefix)){
+                    dropModule(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the total size of the reports whose module is cached
+     *
+     * @return long
+     */
+    public static long getModuleWeight() {
+        synchronized (ENTRIES) {
+            return moduleWeight;
+        }
+    }
+
+    /**
+     * Parses a module report
+     */
+    public interface Parser {
+        Module parse(FilePath moduleFile) throws IOException, InterruptedException;
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private Module module;
+        // Weight of the module, 0 if it is not kept
+        private long weight;
+        private ModuleHeader header;
+        private String digest;
+
+        private Entry(final long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Releases the modules of a build once it is completed
+     */
+    @Extension
+    public static class ModuleCacheRunListener extends RunListener<AbstractBuild> {
+        @Override
+        public void onFinalized(final AbstractBuild build) {
+            release(GrapesPlugin.getBuildReportFolder(build));
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.axway.grapes.jenkins.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.PeriodicWork;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.commons.datamodel.Organization;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Organization Cache
+ *
+ * <p>Remembers, per Grapes server, the organization of the modules, which holds the corporate groupId prefixes.
+ * The organization of a module does not depend on its version.</p>
+ * <p>An organization older than the time-to-live is still returned, and refreshed in background for the next reports.
+ * Only the first lookup of a module waits for the Grapes server.
+ * The cache is stored in JENKINS_HOME and refreshed when Jenkins starts, so the reports do not wait after a restart either.</p>
+ *
+ * @author jdcoffre
+ */
+public final class OrganizationCache {
+
+    public static final int MAX_ENTRIES = Integer.getInteger(OrganizationCache.class.getName() + ".maxEntries", 10000);
+
+    public static final long TTL = TimeUnit.MINUTES.toMillis(Integer.getInteger(OrganizationCache.class.getName() + ".ttlMinutes", 60));
+
+    // Time budget of a background refresh in seconds
+    public static final int REFRESH_TIMEOUT = Integer.getInteger(OrganizationCache.class.getName() + ".refreshTimeout", 30);
+
+    public static final String CACHE_FILE = "organizations";
+
+    private static final String SEPARATOR = "|";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static {
+        MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private static final OrganizationCache INSTANCE = new OrganizationCache(null, MAX_ENTRIES, TTL);
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Grapes organization refresh").setDaemon(true).build());
+
+    // null for the file of JENKINS_HOME
+    private final File file;
+
+    private final long ttl;
+
+    // <server url>|<module name> -> organization
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Keys of the entries whose refresh is scheduled
+    private final Set<String> refreshing = new HashSet<String>();
+
+    private boolean dirty = false;
+
+    OrganizationCache(final File file, final int maxEntries, final long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static OrganizationCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads the organizations stored in JENKINS_HOME and refreshes the stale ones in background
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        final GrapesNotifierDescriptor descriptor = Jenkins.getInstance().getDescriptorByType(GrapesNotifierDescriptor.class);
+        final Map<String, PooledGrapesClient> clients = new HashMap<String, PooledGrapesClient>();
+        if(descriptor != null && descriptor.getServers() != null){
+            for(GrapesConfig config: descriptor.getServers()){
+                final PooledGrapesClient client = GrapesClientRegistry.get(config);
+                clients.put(client.getServerUrl(), client);
+            }
+        }
+        INSTANCE.prewarm(clients);
+    }
+
+    /**
+     * Loads the stored organizations and refreshes the stale ones in background, the entries of the other servers are dropped
+     *
+     * @param clients Map<String, PooledGrapesClient> the clients per server url
+     */
+    void prewarm(final Map<String, PooledGrapesClient> clients) {
+        load();
+        refreshAll(clients);
+    }
+
+    /**
+     * Returns the organization of a module, it is looked up on the Grapes server only if it is not in the cache
+     *
+     * @param client PooledGrapesClient
+     * @param moduleName String
+     * @param moduleVersion String
+     * @return Organization
+     * @throws GrapesCommunicationException
+     */
+    public Organization getOrganization(final PooledGrapesClient client, final String moduleName, final String moduleVersion) throws GrapesCommunicationException {
+        final String key = getKey(client.getServerUrl(), moduleName);
+        synchronized (this){
+            final Entry entry = entries.get(key);
+            if(entry != null){
+                // The refreshes use the last version requested, the first one may not exist anymore on the server
+                if(moduleVersion != null && !moduleVersion.equals(entry.moduleVersion)){
+                    entry.moduleVersion = moduleVersion;
+                    dirty = true;
+                }
+                if(System.currentTimeMillis() - entry.timestamp > ttl){
+                    scheduleRefresh(client, key, moduleName, moduleVersion);
+                }
+                return entry.organization;
+            }
+        }
+
+        final Organization organization = client.fetchModuleOrganization(moduleName, moduleVersion);
+        put(key, moduleName, moduleVersion, organization);
+        return organization;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    private synchronized void put(final String key, final String moduleName, final String moduleVersion, final Organization organization) {
+        if(organization != null){
+            entries.put(key, new Entry(moduleName, moduleVersion, organization, System.currentTimeMillis()));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Refreshes the stale entries of the configured servers, the entries of the other servers are dropped
+     *
+     * @param clients Map<String, PooledGrapesClient> the clients per server url
+     */
+    private synchronized void refreshAll(final Map<String, PooledGrapesClient> clients) {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()){
+            final Map.Entry<String, Entry> entry = iterator.next();
+            final String serverUrl = entry.getKey().substring(0, entry.getKey().lastIndexOf(SEPARATOR));
+            final PooledGrapesClient client = clients.get(serverUrl);
+            if(client == null){
+                iterator.remove();
+                dirty = true;
+            }
+            else if(System.currentTimeMillis() - entry.getValue().timestamp > ttl){
+                scheduleRefresh(client, entry.getKey(), entry.getValue().moduleName, entry.getValue().moduleVersion);
+            }
+        }
+    }
+
+    private void scheduleRefresh(final PooledGrapesClient client, final String key, final String moduleName, final String moduleVersion) {
+        if(!refreshing.add(key)){
+            return;
+        }
+
+        refresher.submit(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    final PooledGrapesClient refreshClient = client.withDeadline(Deadline.after(REFRESH_TIMEOUT, TimeUnit.SECONDS));
+                    put(key, moduleName, moduleVersion, refreshClient.fetchModuleOrganization(moduleName, moduleVersion));
+                } catch (Exception e){
+                    // The stale organization is kept, it will be refreshed again at next use
+                    GrapesPlugin.getLogger().log(Level.FINE, "[GRAPES] Failed to refresh the organization of " + moduleName, e);
+                } finally {
+                    synchronized (OrganizationCache.this){
+                        refreshing.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    private static String getKey(final String serverUrl, final String moduleName) {
+        return serverUrl + SEPARATOR + moduleName;
+    }
+
+    private File getFile() {
+        if(file != null){
+            return file;
+        }
+        final File grapesFolder = new File(Jenkins.getInstance().getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER);
+        return new File(grapesFolder, CACHE_FILE);
+    }
+
+    private synchronized void load() {
+        final File file = getFile();
+        if(!file.exists()){
+            return;
+        }
+
+        BufferedReader reader = null;
+        try{
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null){
+                // line format: <timestamp>|<server url>|<module name>|<module version>|<organization>
+                final String[] fields = line.split("\\" + SEPARATOR, 5);
+                if(fields.length == 5){
+                    entries.put(getKey(fields[1], fields[2]),
+                            new Entry(fields[2], fields[3], MAPPER.readValue(fields[4], Organization.class), Long.parseLong(fields[0])));
+                }
+            }
+        } catch (Exception e){
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to load organization cache " + file.getPath(), e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    synchronized void save() {
+        if(!dirty){
+            return;
+        }
+
+        final File file = getFile();
+        try{
+            file.getParentFile().mkdirs();
+            final AtomicFileWriter writer = new AtomicFileWriter(file, "UTF-8");
+            try{
+                for(Map.Entry<String, Entry> entry: entries.entrySet()){
+                    final String serverUrl = entry.getKey().substring(0, entry.getKey().lastIndexOf(SEPARATOR));
+                    writer.write(entry.getValue().timestamp + SEPARATOR + serverUrl + SEPARATOR + entry.getValue().moduleName + SEPARATOR +
+                            entry.getValue().moduleVersion + SEPARATOR + MAPPER.writeValueAsString(entry.getValue().organization) + "\n");
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+            dirty = false;
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to save organization cache " + file.getPath(), e);
+        }
+    }
+
+    private static class Entry {
+        // Module used to refresh the organization: the last version requested
+        private final String moduleName;
+        private String moduleVersion;
+
+        private final Organization organization;
+        private final long timestamp;
+
+        private Entry(final String moduleName, final String moduleVersion, final Organization organization, final long timestamp) {
+            this.moduleName = moduleName;
+            this.moduleVersion = moduleVersion;
+            this.organization = organization;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Periodically writes the modified cache on disk
+     */
+    @Extension
+    public static class OrganizationCacheSaver extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            INSTANCE.save();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.axway.grapes.jenkins.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit Breaker
+ *
+ * <p>Tracks the availability of a Grapes server. After several consecutive failures the circuit opens:
+ * requests are rejected without reaching the server. Once the retry delay is elapsed, a single probe request
+ * is allowed (half-open state), its result closes the circuit or opens it again.</p>
+ *
+ * @author jdcoffre
+ */
+public class CircuitBreaker {
+
+    public static final int FAILURE_THRESHOLD = Integer.getInteger(CircuitBreaker.class.getName() + ".failureThreshold", 5);
+
+    public static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(Integer.getInteger(CircuitBreaker.class.getName() + ".retryDelay", 30));
+
+    public static enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures = 0;
+
+    private long openedAt = 0;
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns the time at which the circuit has been opened for the last time (0 if never)
+     *
+     * @return long
+     */
+    public synchronized long getOpenedAt() {
+        return openedAt;
+    }
+
+    /**
+     * Checks if a request would be rejected, without reserving the probe
+     *
+     * @return boolean
+     */
+    public synchronized boolean isOpen() {
+        return state == State.HALF_OPEN ||
+                (state == State.OPEN && System.currentTimeMillis() - openedAt < RETRY_DELAY);
+    }
+
+    /**
+     * Checks if a request can be sent to the server. In half-open state, only the first caller gets the probe.
+     *
+     * @return boolean
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if(System.currentTimeMillis() - openedAt >= RETRY_DELAY){
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A probe is already in progress
+                return false;
+        }
+    }
+
+    /**
+     * Records that a request has been allowed but not sent to the server: a probe in progress is given back
+     */
+    public synchronized void cancel() {
+        if(state == State.HALF_OPEN){
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Records the result of a request that has been allowed
+     *
+     * @param success boolean
+     */
+    public synchronized void record(final boolean success) {
+        if(success){
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            return;
+        }
+
+        consecutiveFailures++;
+        if(state == State.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD){
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.axway.grapes.jenkins.client;
+
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+
+/**
+ * Request failure caused by the client itself (time budget, interruption, invalid report...)
+ *
+ * <p>It tells nothing about the availability of the Grapes server, so it is not recorded by the {@link CircuitBreaker}.</p>
+ *
+ * @author jdcoffre
+ */
+class ClientFailureException extends GrapesCommunicationException {
+
+    ClientFailureException(final String message, final int httpStatus) {
+        super(message, httpStatus);
+    }
+}
@@ -0,0 +1,58 @@
+package org.axway.grapes.jenkins.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline
+ *
+ * <p>Time budget shared by all the requests performed for a build.</p>
+ *
+ * @author jdcoffre
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    // System.nanoTime() based, Long.MAX_VALUE when there is no deadline
+    private final long expiration;
+
+    private Deadline(final long expiration) {
+        this.expiration = expiration;
+    }
+
+    /**
+     * Returns a deadline that never expires
+     *
+     * @return Deadline
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * Returns a deadline that expires after the given time budget
+     *
+     * @param budget long
+     * @param unit TimeUnit
+     * @return Deadline
+     */
+    public static Deadline after(final long budget, final TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(budget));
+    }
+
+    /**
+     * Returns the remaining time in milliseconds (Long.MAX_VALUE if there is no deadline)
+     *
+     * @return long
+     */
+    public long remaining() {
+        if(this == NONE){
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiration - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return remaining() == 0;
+    }
+}
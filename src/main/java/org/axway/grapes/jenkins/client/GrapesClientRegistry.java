@@ -0,0 +1,101 @@
+package org.axway.grapes.jenkins.client;
+
+import org.axway.grapes.jenkins.config.GrapesConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grapes Client Registry
+ *
+ * <p>Holds one long-lived client per Grapes server, identified by its host and port.
+ * The configurations of the same server share its connections and its circuit breaker, each of them keeps its own timeouts.
+ * When several configurations of a server set a different maximum of connections, the smallest one applies.</p>
+ * <p>When the global configuration is saved, the clients of the servers that are still configured are kept.</p>
+ *
+ * @author jdcoffre
+ */
+public final class GrapesClientRegistry {
+
+    private static volatile Map<String, PooledGrapesClient> clients = Collections.emptyMap();
+
+    private GrapesClientRegistry() {
+        // Hide utility class constructor
+    }
+
+    /**
+     * Returns the client of a Grapes server configuration
+     *
+     * @param config GrapesConfig
+     * @return PooledGrapesClient
+     */
+    public static PooledGrapesClient get(final GrapesConfig config) {
+        return get(config.getHost(), String.valueOf(config.getPort()), config.getMaxConnections(), config.getTimeout(), config.getRequestTimeout());
+    }
+
+    /**
+     * Returns the client of a Grapes server
+     *
+     * @param host String
+     * @param port String
+     * @param maxConnections int used only if the server has no client yet
+     * @param connectTimeout int connection timeout in milliseconds
+     * @param requestTimeout int request timeout in milliseconds
+     * @return PooledGrapesClient
+     */
+    public static PooledGrapesClient get(final String host, final String port, final int maxConnections, final int connectTimeout, final int requestTimeout) {
+        final String key = getKey(host, port);
+        final PooledGrapesClient client = clients.get(key);
+        if(client != null){
+            return client.withTimeouts(connectTimeout, requestTimeout);
+        }
+
+        synchronized (GrapesClientRegistry.class) {
+            PooledGrapesClient newClient = clients.get(key);
+            if(newClient == null){
+                newClient = new PooledGrapesClient(host, port, maxConnections, connectTimeout, requestTimeout);
+                final Map<String, PooledGrapesClient> newClients = new HashMap<String, PooledGrapesClient>(clients);
+                newClients.put(key, newClient);
+                clients = newClients;
+            }
+            return newClient.withTimeouts(connectTimeout, requestTimeout);
+        }
+    }
+
+    /**
+     * Updates the clients for a new list of Grapes server configurations.
+     * The clients of the servers still configured are kept with their circuit breaker and their requests in flight.
+     *
+     * @param servers List<GrapesConfig> (can be null)
+     */
+    public static synchronized void reset(final List<GrapesConfig> servers) {
+        final Map<String, Integer> maxConnections = new HashMap<String, Integer>();
+        final Map<String, PooledGrapesClient> newClients = new HashMap<String, PooledGrapesClient>();
+        if(servers != null){
+            for(GrapesConfig config: servers){
+                final String port = String.valueOf(config.getPort());
+                final String key = getKey(config.getHost(), port);
+                final int configMax = config.getMaxConnections() > 0 ? config.getMaxConnections() : PooledGrapesClient.DEFAULT_MAX_CONNECTIONS;
+                final Integer previous = maxConnections.get(key);
+                maxConnections.put(key, previous == null ? configMax : Math.min(previous, configMax));
+
+                if(!newClients.containsKey(key)){
+                    final PooledGrapesClient client = clients.get(key);
+                    newClients.put(key, client != null ? client :
+                            new PooledGrapesClient(config.getHost(), port, config.getMaxConnections(), config.getTimeout(), config.getRequestTimeout()));
+                }
+            }
+        }
+
+        for(Map.Entry<String, PooledGrapesClient> client: newClients.entrySet()){
+            client.getValue().setMaxConnections(maxConnections.get(client.getKey()));
+        }
+        clients = newClients;
+    }
+
+    private static String getKey(final String host, final String port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,193 @@
+package org.axway.grapes.jenkins.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import hudson.FilePath;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.axway.grapes.jenkins.reports.ReportStorage;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+
+/**
+ * Module Stream Upload
+ *
+ * <p>Posts a module report to Grapes server without loading it in memory.
+ * The bytes of the report are piped into the request body while a streaming parser checks that the report is a valid module.
+ * If the report turns out to be invalid, the request is aborted before the body is complete.</p>
+ *
+ * @author jdcoffre
+ */
+public class ModuleStreamUpload implements Callable<Void> {
+
+    public static final String MODULE_RESOURCE = "/module";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String serverUrl;
+    private final FilePath moduleFile;
+    private final String user;
+    private final String password;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    /**
+     * @param serverUrl String
+     * @param moduleFile FilePath
+     * @param user String (null for anonymous)
+     * @param password String
+     * @param connectTimeout int connection timeout in milliseconds, 0 for no timeout
+     * @param readTimeout int read timeout in milliseconds, 0 for no timeout
+     */
+    public ModuleStreamUpload(final String serverUrl, final FilePath moduleFile, final String user, final String password, final int connectTimeout, final int readTimeout) {
+        this.serverUrl = serverUrl;
+        this.moduleFile = moduleFile;
+        this.user = user;
+        this.password = password;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public Void call() throws IOException, InterruptedException, GrapesCommunicationException {
+        final String url = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url + MODULE_RESOURCE).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestProperty("Content-Type", "application/json");
+        // the length of a compressed report is not the length of its content
+        final FilePath content = ReportStorage.resolve(moduleFile);
+        if(ReportStorage.isPlain(content)){
+            connection.setFixedLengthStreamingMode((int) content.length());
+        }
+        else{
+            connection.setChunkedStreamingMode(0);
+        }
+        if(user != null){
+            final String credentials = user + ":" + (password == null ? "" : password);
+            connection.setRequestProperty("Authorization", "Basic " + DatatypeConverter.printBase64Binary(credentials.getBytes("UTF-8")));
+        }
+
+        boolean complete = false;
+        try{
+            final OutputStream body = connection.getOutputStream();
+            final InputStream report = new TeeInputStream(ReportStorage.read(moduleFile), body);
+            try{
+                validate(report);
+                // forward what the parser did not need to read (trailing white spaces)
+                IOUtils.copy(report, new NullOutputStream());
+            } catch (MalformedReportException e) {
+                // the report is to blame, not the server
+                throw new ClientFailureException(e.getMessage(), 500);
+            } finally {
+                IOUtils.closeQuietly(report);
+            }
+            body.close();
+            complete = true;
+
+            final int status = connection.getResponseCode();
+            final String message = connection.getResponseMessage();
+            drain(connection, status);
+            if(status < 200 || status >= 300){
+                throw new GrapesCommunicationException("Failed to post module " + moduleFile.getName() + ": " + message, status);
+            }
+            return null;
+        } finally {
+            // an incomplete body must not be sent as a valid request
+            if(!complete){
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Reads the response to its end so that the connection is kept alive and reused by the next requests
+     *
+     * @param connection HttpURLConnection
+     * @param status int
+     */
+    private static void drain(final HttpURLConnection connection, final int status) {
+        InputStream response = null;
+        try{
+            response = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if(response != null){
+                IOUtils.copy(response, new NullOutputStream());
+            }
+        } catch (IOException e){
+            // the connection will not be reused
+            connection.disconnect();
+        } finally {
+            IOUtils.closeQuietly(response);
+        }
+    }
+
+    /**
+     * Parses the report token by token and checks that it is a module with a name and a version
+     *
+     * @param report InputStream
+     * @throws IOException
+     */
+    private void validate(final InputStream report) throws IOException {
+        final JsonParser parser = JSON_FACTORY.createJsonParser(report);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try{
+            validate(parser);
+        } catch (JsonParseException e) {
+            throw new MalformedReportException("[GRAPES] Malformed module report " + moduleFile.getName() + ": " + e.getMessage());
+        }
+        parser.close();
+    }
+
+    private void validate(final JsonParser parser) throws IOException {
+        if(parser.nextToken() != JsonToken.START_OBJECT){
+            throw new MalformedReportException("[GRAPES] Malformed module report, it should be a Json object: " + moduleFile.getName());
+        }
+
+        boolean hasName = false;
+        boolean hasVersion = false;
+        JsonToken token;
+        while((token = parser.nextToken()) != JsonToken.END_OBJECT){
+            if(token == null){
+                throw new MalformedReportException("[GRAPES] Truncated module report: " + moduleFile.getName());
+            }
+
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if("name".equals(field)){
+                hasName = value == JsonToken.VALUE_STRING;
+            }
+            else if("version".equals(field)){
+                hasVersion = value == JsonToken.VALUE_STRING;
+            }
+            parser.skipChildren();
+        }
+
+        if(!hasName || !hasVersion){
+            throw new MalformedReportException("[GRAPES] Malformed module report, name or version is missing: " + moduleFile.getName());
+        }
+        if(parser.nextToken() != null){
+            throw new MalformedReportException("[GRAPES] Malformed module report, unexpected content after the module: " + moduleFile.getName());
+        }
+    }
+
+    /**
+     * The report is not a valid module, unlike the other IOExceptions it does not come from the connection
+     */
+    private static class MalformedReportException extends IOException {
+        private MalformedReportException(final String message) {
+            super(message);
+        }
+    }
+}
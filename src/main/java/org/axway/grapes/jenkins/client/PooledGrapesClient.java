@@ -0,0 +1,518 @@
+package org.axway.grapes.jenkins.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.FilePath;
+import org.axway.grapes.commons.datamodel.Dependency;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.commons.datamodel.Organization;
+import org.axway.grapes.jenkins.cache.LastVersionCache;
+import org.axway.grapes.jenkins.cache.OrganizationCache;
+import org.axway.grapes.utils.client.GrapesClient;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pooled Grapes Client
+ *
+ * <p>Long-lived client of a Grapes server shared by all the builds.
+ * The number of concurrent requests to the server is bounded so that the HTTP connections
+ * are kept alive and reused between requests instead of being opened for each of them.</p>
+ * <p>Each request is bounded by the timeout of the server configuration and by the deadline of the client
+ * (see {@link #withDeadline(Deadline)}). A request that runs out of time is cancelled.</p>
+ * <p>While the {@link CircuitBreaker} of the server is open, requests fail immediately without reaching the server.</p>
+ * <p>Identical read requests sent concurrently share a single request to the server.</p>
+ * <p>The clients returned by {@link #withDeadline(Deadline)} and {@link #withTimeouts(int, int)} share the connections,
+ * the circuit breaker and the requests in flight of this one.</p>
+ *
+ * @author jdcoffre
+ */
+public class PooledGrapesClient {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    public static final int MAX_REQUEST_THREADS = Integer.getInteger(PooledGrapesClient.class.getName() + ".maxRequestThreads", 64);
+
+    // Bounded: a timed out request cannot be interrupted while it blocks on a socket, it keeps its thread until it really ends
+    private static final ExecutorService REQUEST_EXECUTOR = new ThreadPoolExecutor(0, MAX_REQUEST_THREADS, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("Grapes request %d").setDaemon(true).build());
+
+    private final GrapesClient client;
+
+    // URL of the server, null if unknown
+    private final String serverUrl;
+
+    private final ConnectionLimit connections;
+
+    // Connection timeout in milliseconds, 0 for no timeout
+    private final int connectTimeout;
+
+    // Timeout of a request in milliseconds, 0 for no timeout
+    private final int requestTimeout;
+
+    private final Deadline deadline;
+
+    private final CircuitBreaker circuitBreaker;
+
+    // Read requests in flight, shared by the clients of the server
+    private final SingleFlight inFlight;
+
+    public PooledGrapesClient(final GrapesClient client, final int maxConnections) {
+        this(client, null, maxConnections, 0, 0);
+    }
+
+    /**
+     * @param host String
+     * @param port String
+     * @param maxConnections int maximum number of concurrent requests
+     * @param connectTimeout int connection timeout in milliseconds, 0 for no timeout
+     * @param requestTimeout int maximum duration of a request in milliseconds, 0 for no timeout
+     */
+    public PooledGrapesClient(final String host, final String port, final int maxConnections, final int connectTimeout, final int requestTimeout) {
+        this(new GrapesClient(host, port), getServerUrl(host, port), maxConnections, connectTimeout, requestTimeout);
+    }
+
+    /**
+     * Returns the URL of a server, like GrapesClient: http is used unless the host already has a scheme
+     *
+     * @param host String
+     * @param port String
+     * @return String
+     */
+    static String getServerUrl(final String host, final String port) {
+        final StringBuilder sb = new StringBuilder();
+        if(!host.contains("://")){
+            sb.append("http://");
+        }
+        sb.append(host);
+        if(port != null && !port.trim().isEmpty()){
+            sb.append(':').append(port.trim());
+        }
+        return sb.toString();
+    }
+
+    private PooledGrapesClient(final GrapesClient client, final String serverUrl, final int maxConnections, final int connectTimeout, final int requestTimeout) {
+        this.client = client;
+        this.serverUrl = serverUrl;
+        this.connections = new ConnectionLimit(maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS);
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.requestTimeout = Math.max(0, requestTimeout);
+        this.deadline = Deadline.none();
+        this.circuitBreaker = new CircuitBreaker();
+        this.inFlight = new SingleFlight();
+    }
+
+    private PooledGrapesClient(final PooledGrapesClient pool, final Deadline deadline, final int connectTimeout, final int requestTimeout) {
+        this.client = pool.client;
+        this.serverUrl = pool.serverUrl;
+        this.connections = pool.connections;
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.requestTimeout = Math.max(0, requestTimeout);
+        this.deadline = deadline;
+        this.circuitBreaker = pool.circuitBreaker;
+        this.inFlight = pool.inFlight;
+    }
+
+    /**
+     * Returns a client sharing the connections of this one, whose requests will not run beyond the deadline
+     *
+     * @param deadline Deadline
+     * @return PooledGrapesClient
+     */
+    public PooledGrapesClient withDeadline(final Deadline deadline) {
+        return new PooledGrapesClient(this, deadline, connectTimeout, requestTimeout);
+    }
+
+    /**
+     * Returns a client sharing the connections of this one, whose requests use other timeouts
+     *
+     * @param connectTimeout int connection timeout in milliseconds, 0 for no timeout
+     * @param requestTimeout int maximum duration of a request in milliseconds, 0 for no timeout
+     * @return PooledGrapesClient
+     */
+    public PooledGrapesClient withTimeouts(final int connectTimeout, final int requestTimeout) {
+        return new PooledGrapesClient(this, deadline, connectTimeout, requestTimeout);
+    }
+
+    /**
+     * Returns the URL of the server, null if it is unknown
+     *
+     * @return String
+     */
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getMaxConnections() {
+        return connections.getLimit();
+    }
+
+    /**
+     * Changes the maximum number of concurrent requests, the requests in flight keep their connection
+     *
+     * @param maxConnections int
+     */
+    void setMaxConnections(final int maxConnections) {
+        connections.resize(maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Returns the number of requests currently sent to the server
+     *
+     * @return int
+     */
+    public int getActiveConnections() {
+        return connections.getLimit() - connections.availablePermits();
+    }
+
+    /**
+     * Checks if the server is available, this request is never rejected by the circuit breaker
+     *
+     * @return boolean
+     */
+    public boolean isServerAvailable() {
+        try {
+            return doExecute(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return client.isServerAvailable();
+                }
+            });
+        } catch (GrapesCommunicationException e) {
+            return false;
+        }
+    }
+
+    public void postModule(final Module module, final String user, final String password) throws GrapesCommunicationException {
+        execute(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                client.postModule(module, user, password);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Posts a module report without loading it in memory (see {@link ModuleStreamUpload})
+     *
+     * @param moduleFile FilePath
+     * @param user String
+     * @param password String
+     * @throws GrapesCommunicationException
+     */
+    public void postModule(final FilePath moduleFile, final String user, final String password) throws GrapesCommunicationException {
+        if(serverUrl == null){
+            throw new IllegalStateException("The URL of Grapes server is unknown, the module cannot be streamed.");
+        }
+        execute(new ModuleStreamUpload(serverUrl, moduleFile, user, password, connectTimeout, requestTimeout));
+    }
+
+    public void postBuildInfo(final String moduleName, final String moduleVersion, final Map<String, String> buildInfo, final String user, final String password) throws GrapesCommunicationException {
+        execute(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                client.postBuildInfo(moduleName, moduleVersion, buildInfo, user, password);
+                return null;
+            }
+        });
+    }
+
+    public void promoteModule(final String moduleName, final String moduleVersion, final String user, final String password) throws GrapesCommunicationException {
+        execute(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                client.promoteModule(moduleName, moduleVersion, user, password);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the organization of a module, shared with the other builds through the {@link OrganizationCache}
+     *
+     * @param moduleName String
+     * @param moduleVersion String
+     * @return Organization
+     * @throws GrapesCommunicationException
+     */
+    public Organization getModuleOrganization(final String moduleName, final String moduleVersion) throws GrapesCommunicationException {
+        if(serverUrl == null){
+            return fetchModuleOrganization(moduleName, moduleVersion);
+        }
+        return OrganizationCache.get().getOrganization(this, moduleName, moduleVersion);
+    }
+
+    /**
+     * Looks up the organization of a module on the server, without using the cache
+     *
+     * @param moduleName String
+     * @param moduleVersion String
+     * @return Organization
+     * @throws GrapesCommunicationException
+     */
+    public Organization fetchModuleOrganization(final String moduleName, final String moduleVersion) throws GrapesCommunicationException {
+        return coalesce("organization|" + moduleName + "|" + moduleVersion, new Callable<Organization>() {
+            @Override
+            public Organization call() throws Exception {
+                return client.getModuleOrganization(moduleName, moduleVersion);
+            }
+        });
+    }
+
+    public List<Dependency> getModuleAncestors(final String moduleName, final String moduleVersion) throws GrapesCommunicationException {
+        final List<Dependency> ancestors = coalesce("ancestors|" + moduleName + "|" + moduleVersion, new Callable<List<Dependency>>() {
+            @Override
+            public List<Dependency> call() throws Exception {
+                return client.getModuleAncestors(moduleName, moduleVersion);
+            }
+        });
+
+        // The result may be shared by several callers
+        return ancestors == null ? null : new ArrayList<Dependency>(ancestors);
+    }
+
+    /**
+     * Returns the last version of an artifact, shared with the other builds through the {@link LastVersionCache}
+     *
+     * @param gavc String
+     * @return String
+     * @throws GrapesCommunicationException
+     */
+    public String getArtifactLastVersion(final String gavc) throws GrapesCommunicationException {
+        final LastVersionCache cache = LastVersionCache.get();
+        if(serverUrl != null){
+            final String lastVersion = cache.getLastVersion(serverUrl, gavc);
+            if(lastVersion != null){
+                return lastVersion;
+            }
+        }
+
+        final String lastVersion = coalesce("lastVersion|" + gavc, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return client.getArtifactLastVersion(gavc);
+            }
+        });
+        if(serverUrl != null){
+            cache.setLastVersion(serverUrl, gavc, lastVersion);
+        }
+        return lastVersion;
+    }
+
+    /**
+     * Performs a read request, or shares the result of the identical request sent by another caller (see {@link SingleFlight})
+     *
+     * @param key String identifies identical requests
+     * @param request Callable<T>
+     * @return T
+     * @throws GrapesCommunicationException
+     */
+    private <T> T coalesce(final String key, final Callable<T> request) throws GrapesCommunicationException {
+        // Set if this caller sent the request itself
+        final boolean[] sent = {false};
+        try {
+            return inFlight.execute(key, new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    sent[0] = true;
+                    return execute(request);
+                }
+            }, getTimeout());
+        } catch (GivenUpException e) {
+            // The caller that sent the request ran out of time, this one may still have some
+            if(!sent[0] && getTimeout() > 0 && !Thread.currentThread().isInterrupted()){
+                return execute(request);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Performs a request to the server once a connection is available
+     *
+     * @param request Callable<T>
+     * @return T
+     * @throws GrapesCommunicationException
+     */
+    protected <T> T execute(final Callable<T> request) throws GrapesCommunicationException {
+        if(!circuitBreaker.allowRequest()){
+            throw new GrapesCommunicationException("Grapes server is unavailable, the request has not been sent", 503);
+        }
+
+        boolean success = false;
+        boolean sent = true;
+        try {
+            final T result = doExecute(request);
+            success = true;
+            return result;
+        } catch (ClientFailureException e) {
+            // The client ran out of time, has been interrupted or could not build the request: the server is not to blame
+            sent = false;
+            throw e;
+        } catch (GrapesCommunicationException e) {
+            // The server answered: client errors do not mean that it is unavailable
+            success = e.getHttpStatus() < 500;
+            throw e;
+        } finally {
+            if(sent){
+                circuitBreaker.record(success);
+            }
+            else{
+                circuitBreaker.cancel();
+            }
+        }
+    }
+
+    private <T> T doExecute(final Callable<T> request) throws GrapesCommunicationException {
+        final long timeout = getTimeout();
+        final long start = System.currentTimeMillis();
+
+        // The time budget of the client is shorter than the timeout of the server configuration
+        final boolean budgetBound = requestTimeout <= 0 || timeout < requestTimeout;
+
+        try {
+            if(timeout <= 0 || !connections.tryAcquire(timeout, TimeUnit.MILLISECONDS)){
+                throw new GivenUpException("No connection to Grapes server available in time", 504);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GivenUpException("Interrupted while waiting for a connection to Grapes server", 500);
+        }
+
+        if(timeout == Long.MAX_VALUE){
+            try {
+                return request.call();
+            } catch (Exception e) {
+                throw toCommunicationException(e);
+            } finally {
+                connections.release();
+            }
+        }
+
+        // The connection is released by the request itself, so a cancelled request still holds it until it really ends
+        final Future<T> future;
+        try {
+            future = REQUEST_EXECUTOR.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return request.call();
+                    } finally {
+                        connections.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connections.release();
+            throw new ClientFailureException("No thread available to send the request to Grapes server", 503);
+        }
+
+        try {
+            return future.get(Math.max(1, timeout - (System.currentTimeMillis() - start)), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if(budgetBound){
+                throw new GivenUpException("Time budget exhausted before Grapes server answered", 504);
+            }
+            throw new GrapesCommunicationException("Grapes server did not answer in time", 504);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new GivenUpException("Interrupted while waiting for Grapes server", 500);
+        } catch (ExecutionException e) {
+            throw toCommunicationException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the time left for a request in milliseconds (Long.MAX_VALUE for no limit)
+     *
+     * @return long
+     */
+    private long getTimeout() {
+        final long remaining = deadline.remaining();
+        if(requestTimeout > 0){
+            return Math.min(requestTimeout, remaining);
+        }
+        return remaining;
+    }
+
+    private static GrapesCommunicationException toCommunicationException(final Throwable cause) {
+        if(cause instanceof GrapesCommunicationException){
+            return (GrapesCommunicationException) cause;
+        }
+        if(cause instanceof RuntimeException){
+            throw (RuntimeException) cause;
+        }
+        if(cause instanceof Error){
+            throw (Error) cause;
+        }
+        return new GrapesCommunicationException(cause.getMessage(), 500);
+    }
+
+    /**
+     * Bound of the concurrent requests to the server, that can be changed while requests are in flight
+     */
+    private static class ConnectionLimit extends Semaphore {
+
+        private int limit;
+
+        private ConnectionLimit(final int limit) {
+            super(limit, true);
+            this.limit = limit;
+        }
+
+        private synchronized int getLimit() {
+            return limit;
+        }
+
+        private synchronized void resize(final int newLimit) {
+            if(newLimit > limit){
+                release(newLimit - limit);
+            }
+            else if(newLimit < limit){
+                // The permits held by the requests in flight are given back when they end
+                reducePermits(limit - newLimit);
+            }
+            limit = newLimit;
+        }
+    }
+
+    /**
+     * Request given up by the client before the server answered
+     */
+    private static class GivenUpException extends ClientFailureException {
+        private GivenUpException(final String message, final int httpStatus) {
+            super(message, httpStatus);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.axway.grapes.jenkins.client;
+
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single Flight
+ *
+ * <p>Coalesces identical concurrent requests: the first caller performs the request,
+ * the callers that ask for the same key while it is in flight wait for its result instead of sending their own.</p>
+ *
+ * @author jdcoffre
+ */
+final class SingleFlight {
+
+    // key -> request in flight
+    private final ConcurrentMap<String, FutureTask<?>> calls = new ConcurrentHashMap<String, FutureTask<?>>();
+
+    /**
+     * Performs a request, or waits for the result of the identical request in flight
+     *
+     * @param key String identifies identical requests
+     * @param request Callable<T>
+     * @param timeout long maximum time to wait for the request of another caller in milliseconds (Long.MAX_VALUE for no limit)
+     * @return T
+     * @throws GrapesCommunicationException
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(final String key, final Callable<T> request, final long timeout) throws GrapesCommunicationException {
+        final FutureTask<T> call = new FutureTask<T>(request);
+        final FutureTask<T> inFlight = (FutureTask<T>) calls.putIfAbsent(key, call);
+        if(inFlight != null){
+            return getResult(inFlight, timeout);
+        }
+
+        try {
+            call.run();
+        } finally {
+            calls.remove(key, call);
+        }
+        return getResult(call, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of requests in flight
+     *
+     * @return int
+     */
+    int size() {
+        return calls.size();
+    }
+
+    private static <T> T getResult(final FutureTask<T> call, final long timeout) throws GrapesCommunicationException {
+        try {
+            if(timeout == Long.MAX_VALUE){
+                return call.get();
+            }
+            return call.get(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new GrapesCommunicationException("Grapes server did not answer in time to an identical request", 504);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrapesCommunicationException("Interrupted while waiting for an identical request to Grapes server", 500);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof GrapesCommunicationException){
+                throw (GrapesCommunicationException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new GrapesCommunicationException(cause.getMessage(), 500);
+        }
+    }
+}
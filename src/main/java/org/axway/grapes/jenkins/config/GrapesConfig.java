@@ -11,6 +11,8 @@ import org.kohsuke.stapler.DataBoundConstructor;
  */
 public class GrapesConfig {
 
+    public static final int DEFAULT_REQUEST_TIMEOUT = 30000;
+
     private String name;
 
     private String host;
@@ -19,15 +21,38 @@ public class GrapesConfig {
 
     private Credentials publisherCredentials;
 
+    // Connection timeout in milliseconds
     private int timeout;
 
-    @DataBoundConstructor
+    // Request timeout in milliseconds, missing from the configurations saved by older versions
+    private Integer requestTimeout;
+
+    private int maxConnections;
+
+    private boolean publishFromAgent;
+
     public GrapesConfig(final String name, final String host, final int port, final int timeout, final Credentials publisherCredentials){
+        this(name, host, port, timeout, 0, publisherCredentials);
+    }
+
+    public GrapesConfig(final String name, final String host, final int port, final int timeout, final int maxConnections, final Credentials publisherCredentials){
+        this(name, host, port, timeout, maxConnections, false, publisherCredentials);
+    }
+
+    public GrapesConfig(final String name, final String host, final int port, final int timeout, final int maxConnections, final boolean publishFromAgent, final Credentials publisherCredentials){
+        this(name, host, port, timeout, DEFAULT_REQUEST_TIMEOUT, maxConnections, publishFromAgent, publisherCredentials);
+    }
+
+    @DataBoundConstructor
+    public GrapesConfig(final String name, final String host, final int port, final int timeout, final int requestTimeout, final int maxConnections, final boolean publishFromAgent, final Credentials publisherCredentials){
         this.name = name;
         this.host = host;
         this.port = port;
         this.publisherCredentials = publisherCredentials;
         this.timeout = timeout;
+        this.requestTimeout = requestTimeout;
+        this.maxConnections = maxConnections;
+        this.publishFromAgent = publishFromAgent;
     }
 
     public String getName() {
@@ -62,6 +87,11 @@ public class GrapesConfig {
         this.publisherCredentials = publisherCredentials;
     }
 
+    /**
+     * Returns the connection timeout in milliseconds
+     *
+     * @return int
+     */
     public int getTimeout() {
         return timeout;
     }
@@ -69,4 +99,43 @@ public class GrapesConfig {
     public void setTimeout(final int timeout) {
         this.timeout = timeout;
     }
+
+    /**
+     * Returns the maximum duration of a request in milliseconds (0 for no timeout)
+     *
+     * @return int
+     */
+    public int getRequestTimeout() {
+        return requestTimeout == null ? DEFAULT_REQUEST_TIMEOUT : requestTimeout;
+    }
+
+    public void setRequestTimeout(final int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections to the server (0 for the default value)
+     *
+     * @return int
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(final int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns true if the module reports and the build info are posted by the agent that ran the build
+     *
+     * @return boolean
+     */
+    public boolean isPublishFromAgent() {
+        return publishFromAgent;
+    }
+
+    public void setPublishFromAgent(final boolean publishFromAgent) {
+        this.publishFromAgent = publishFromAgent;
+    }
 }
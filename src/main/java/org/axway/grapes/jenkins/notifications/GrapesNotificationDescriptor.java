@@ -7,7 +7,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
 import org.axway.grapes.jenkins.notifications.maven.GrapesMavenPluginNotification.GrapesMavenPluginNotificationDescriptorImpl;
 
 import jenkins.model.Jenkins;
@@ -33,6 +35,49 @@ public abstract class GrapesNotificationDescriptor extends Descriptor<GrapesNoti
      */
     public abstract GrapesNotification createAutoInstance(AbstractBuild<?, ?> build);
 
+    /**
+     * Generates all the instances of Grapes notification of a build.
+     * <p>By default it returns the instance generated by {@link #createAutoInstance(AbstractBuild)}.
+     * Override it if a build can produce several notifications of this kind, one per Maven module for instance.</p>
+     *
+     * @param build AbstractBuild<?, ?>
+     * @return List<GrapesNotification> (never null, empty list if there is none)
+     */
+    public List<GrapesNotification> createAutoInstances(final AbstractBuild<?, ?> build) {
+        final GrapesNotification notification = createAutoInstance(build);
+        if(notification == null){
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(notification);
+    }
+
+    /**
+     * Returns the kinds of notification that must have been sent before the given notification.
+     * <p>Only the notifications of the same build that target the same module are awaited.
+     * Override it to declare the ordering constraints of your own notifications.</p>
+     *
+     * @param notification GrapesNotification
+     * @return Collection<NotificationType>
+     */
+    public Collection<NotificationType> getPrerequisites(final GrapesNotification notification) {
+        return getDefaultPrerequisites(notification.getNotificationAction());
+    }
+
+    /**
+     * Returns the default ordering constraints of a kind of notification:
+     * build info and promotion require the module to exist on Grapes server.
+     *
+     * @param notificationType NotificationType
+     * @return Collection<NotificationType>
+     */
+    public static Collection<NotificationType> getDefaultPrerequisites(final NotificationType notificationType) {
+        if(notificationType == NotificationType.POST_MODULE_BUILD_INFO ||
+                notificationType == NotificationType.PROMOTE){
+            return Collections.singletonList(NotificationType.POST_MODULE);
+        }
+        return Collections.emptyList();
+    }
+
     /**
      *  Lists all the currently registered instances of {@link GrapesNotificationDescriptor}.
      *
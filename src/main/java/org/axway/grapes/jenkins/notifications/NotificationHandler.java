@@ -1,21 +1,31 @@
 package org.axway.grapes.jenkins.notifications;
 
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import org.axway.grapes.commons.datamodel.Module;
-import org.axway.grapes.commons.utils.FileUtils;
-import org.axway.grapes.commons.utils.JsonUtils;
+import jenkins.model.Jenkins;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
 import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.cache.DeliveredReportCache;
+import org.axway.grapes.jenkins.cache.LastVersionCache;
+import org.axway.grapes.jenkins.cache.ModuleCache;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
 import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
 import org.axway.grapes.jenkins.reports.GrapesBuildAction;
 import org.axway.grapes.jenkins.resend.ResendBuildAction;
-import org.axway.grapes.utils.client.GrapesClient;
+import org.axway.grapes.jenkins.resend.ResendJournal;
+import org.axway.grapes.jenkins.resend.RetryPolicy;
 import org.axway.grapes.utils.client.GrapesCommunicationException;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 
 /**
@@ -29,12 +39,33 @@ public class NotificationHandler {
 
     public static final String TO_RESEND_SUFFIX = "-to-resend";
 
-    private final GrapesClient client;
+    private final PooledGrapesClient client;
+    private final DeliveredReportCache deliveredReports;
+    private final boolean force;
+    private final boolean streamModuleUpload;
     private String password;
     private  String user;
 
     public NotificationHandler(final GrapesConfig config) {
-        client = new GrapesClient(config.getHost(), String.valueOf(config.getPort()));
+        this(config, false);
+    }
+
+    public NotificationHandler(final GrapesConfig config, final boolean force) {
+        this(config, force, Deadline.none());
+    }
+
+    /**
+     * @param config GrapesConfig
+     * @param force boolean if true, the reports are sent even if they have already been delivered
+     * @param deadline Deadline time budget of all the notifications sent by this handler
+     */
+    public NotificationHandler(final GrapesConfig config, final boolean force, final Deadline deadline) {
+        client = GrapesClientRegistry.get(config).withDeadline(deadline);
+        deliveredReports = DeliveredReportCache.get(config);
+        this.force = force;
+
+        final GrapesNotifierDescriptor descriptor = Jenkins.getInstance().getDescriptorByType(GrapesNotifierDescriptor.class);
+        streamModuleUpload = descriptor != null && descriptor.getStreamModuleUpload();
 
         if (config.getPublisherCredentials() != null) {
             user = config.getPublisherCredentials().getUsername();
@@ -43,6 +74,10 @@ public class NotificationHandler {
     }
 
 
+    public Deadline getDeadline() {
+        return client.getDeadline();
+    }
+
     /**
      * Sends a resendBuildActions to Grapes server
      *
@@ -63,14 +98,47 @@ public class NotificationHandler {
      * @throws GrapesCommunicationException
      */
     public void send(final GrapesNotification notification, final AbstractBuild<?,?> build) throws GrapesCommunicationException {
+        // Grapes server is known to be unavailable: keep the notification for later without any network call
+        if(client.getCircuitBreaker().isOpen()){
+            postpone(notification, build);
+            throw new GrapesCommunicationException("Grapes server is unavailable, the notification has been postponed", 503);
+        }
+
         try{
             // perform the notification
             switch (notification.getNotificationAction()){
                 case POST_MODULE:
                     // Send the module
                     final FilePath moduleFilePath = notification.getMimePath();
-                    final Module module = GrapesPlugin.getModule(moduleFilePath);
-                    client.postModule(module, user, password);
+                    final String moduleHash = ModuleCache.getDigest(moduleFilePath);
+                    final boolean post = force || !deliveredReports.isDelivered(NotificationType.POST_MODULE, notification.getModuleName(), notification.getModuleVersion(), moduleHash);
+
+                    // The report is parsed once for the post, the last versions and the dependency report,
+                    // reports heavier than the budget of the ModuleCache are not kept by the cache
+                    Module module = null;
+                    if(post){
+                        if(streamModuleUpload){
+                            client.postModule(moduleFilePath, user, password);
+                        }
+                        else{
+                            module = GrapesPlugin.getModule(moduleFilePath);
+                            client.postModule(module, user, password);
+                        }
+                        deliveredReports.delivered(NotificationType.POST_MODULE, notification.getModuleName(), notification.getModuleVersion(), moduleHash);
+                    }
+                    else{
+                        GrapesPlugin.getLogger().fine("[GRAPES] Module " + notification.getModuleName() + " in version " + notification.getModuleVersion() + " already delivered, skipping.");
+                    }
+
+                    // Not parsed yet when the upload was streamed or skipped
+                    if(module == null){
+                        module = GrapesPlugin.getModule(moduleFilePath);
+                    }
+
+                    // The last versions of the artifacts of the module may have changed
+                    if(post){
+                        LastVersionCache.get().invalidate(client.getServerUrl(), module);
+                    }
 
                     // Generate build action with the dependency report
                     final GrapesBuildAction buildAction = new GrapesBuildAction(module, client);
@@ -86,32 +154,64 @@ public class NotificationHandler {
                 case POST_MODULE_BUILD_INFO:
                     final FilePath buildInfoPath = notification.getMimePath();
                     final Map<String, String> buildInfo = GrapesPlugin.getBuildInfo(buildInfoPath);
-                    client.postBuildInfo(notification.getModuleName(), notification.getModuleVersion(), buildInfo, user, password);
+                    final String buildInfoHash = getBuildInfoHash(buildInfo);
+                    if(force || !deliveredReports.isDelivered(NotificationType.POST_MODULE_BUILD_INFO, notification.getModuleName(), notification.getModuleVersion(), buildInfoHash)){
+                        client.postBuildInfo(notification.getModuleName(), notification.getModuleVersion(), buildInfo, user, password);
+                        deliveredReports.delivered(NotificationType.POST_MODULE_BUILD_INFO, notification.getModuleName(), notification.getModuleVersion(), buildInfoHash);
+                    }
+                    else{
+                        GrapesPlugin.getLogger().fine("[GRAPES] Build info of " + notification.getModuleName() + " in version " + notification.getModuleVersion() + " already delivered, skipping.");
+                    }
                     break;
                 default:break;
             }
 
-            //discard old resend action if matches moduleName moduleVersion notification type
-            discardOldResend(notification, build.getProject());
+            //acknowledge the pending resend action if matches moduleName moduleVersion notification type
+            ackResend(notification, build.getProject());
         }
 
         catch (Exception e) {
             GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] An error occurred during notification sending ", e);
-            discardOldResend(notification, build.getProject());
-            saveNotification(notification, build);
+            saveNotification(notification, build, true);
             throw new GrapesCommunicationException(e.getMessage(), 500);
 
         }
     }
 
     /**
-     * Serialize a resend action to be able to re-send the notification later
+     * Returns the hash of a build info, the build date is ignored because it changes at each build
+     *
+     * @param buildInfo Map<String, String>
+     * @return String
+     */
+    public static String getBuildInfoHash(final Map<String, String> buildInfo) {
+        final Map<String, String> stableInfo = new TreeMap<String, String>(buildInfo);
+        stableInfo.remove(GrapesPlugin.BUILD_INFO_BUILD_DATE);
+        return Util.getDigestOf(stableInfo.toString());
+    }
+
+    /**
+     * Postpones a notification without sending it: it will be available for re-send
      *
      * @param notification GrapesNotification
      * @param build AbstractBuild
      */
-    private void saveNotification(final GrapesNotification notification, final AbstractBuild<?, ?> build) {
+    public void postpone(final GrapesNotification notification, final AbstractBuild<?, ?> build) {
+        saveNotification(notification, build, false);
+    }
+
+    /**
+     * Journals a resend action to be able to re-send the notification later, it replaces the same notification of the previous builds
+     *
+     * @param notification GrapesNotification
+     * @param build AbstractBuild
+     * @param failed boolean true if the notification has just failed, false if it has not been sent
+     */
+    private void saveNotification(final GrapesNotification notification, final AbstractBuild<?, ?> build, final boolean failed) {
         final ResendBuildAction resendAction = new ResendBuildAction(notification);
+        if(failed){
+            RetryPolicy.failed(resendAction);
+        }
 
         // Check if the notification is valid before serializing it
         if(!isValid(resendAction)){
@@ -120,11 +220,10 @@ public class NotificationHandler {
         }
 
         try{
-            final String serializedResend = JsonUtils.serialize(resendAction);
-            final File reportFolder = new File(GrapesPlugin.getBuildReportFolder(build).toURI());
-            FileUtils.serialize(reportFolder, serializedResend, getNotificationId(notification));
-        }catch (Exception e){
-            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to serialized a resend action ", e);
+            ResendJournal.get().enqueue(build, getNotificationId(notification), resendAction);
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to save the notification to re-send of " + notification.getModuleName() +
+                    " in version " + notification.getModuleVersion() + ", it will not be re-sent.", e);
         }
     }
 
@@ -145,23 +244,18 @@ public class NotificationHandler {
 
 
     /**
-     * Discard old resend actions
-     *  @param notification GrapesNotification
-     * @param project AbstractBuild<?, ?>
+     * Acknowledges the pending resend action of a delivered notification, whatever the build that holds it
+     *
+     * @param notification GrapesNotification
+     * @param project AbstractProject<?, ?>
      */
-    private void discardOldResend(final GrapesNotification notification, final AbstractProject<?, ?> project) {
+    private void ackResend(final GrapesNotification notification, final AbstractProject<?, ?> project) {
         try{
-            for(AbstractBuild<?,?> build : project.getBuilds()){
-                final File reportFolder = new File(GrapesPlugin.getBuildReportFolder(build).toURI());
-                final File notifFile = new File(reportFolder, getNotificationId(notification));
-
-                if(notifFile.exists()){
-                    notifFile.delete();
-                }
-            }
-
-        }catch (Exception e){
-            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to discard a resend action ", e);
+            ResendJournal.get().ack(project.getFullName(), getNotificationId(notification));
+        } catch (IOException e){
+            // The notification remains pending, it will be sent again
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to acknowledge the delivered notification of " + notification.getModuleName() +
+                    " in version " + notification.getModuleVersion(), e);
         }
     }
 
@@ -0,0 +1,233 @@
+package org.axway.grapes.jenkins.notifications;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.model.AbstractBuild;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Notification Scheduler
+ *
+ * <p>Sends the notifications of a build on a bounded pool. A notification waits only for its prerequisites
+ * (see {@link GrapesNotificationDescriptor#getPrerequisites(GrapesNotification)}), the independent ones are sent concurrently.
+ * When a notification fails, the notifications that depend on it are postponed without being sent.
+ * When the time budget of the handler is exhausted, the notifications that are not started yet are postponed.</p>
+ *
+ * @author jdcoffre
+ */
+public class NotificationScheduler {
+
+    public static final int POOL_SIZE = Integer.getInteger(NotificationScheduler.class.getName() + ".poolSize", 4);
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(POOL_SIZE,
+            new ThreadFactoryBuilder().setNameFormat("Grapes notification sender %d").setDaemon(true).build());
+
+    /**
+     * Receives the result of each notification, always called from the thread that runs the scheduler
+     */
+    public interface Listener {
+        void onSent(int index, GrapesNotification notification);
+
+        void onFailed(int index, GrapesNotification notification, Exception cause);
+    }
+
+    private final NotificationHandler handler;
+
+    public NotificationScheduler(final NotificationHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sends the notifications of a build respecting their ordering constraints
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param notifications List<? extends GrapesNotification>
+     * @param listener Listener
+     * @throws InterruptedException
+     */
+    public void send(final AbstractBuild<?, ?> build, final List<? extends GrapesNotification> notifications, final Listener listener) throws InterruptedException {
+        final int size = notifications.size();
+        final List<Set<Integer>> dependents = new ArrayList<Set<Integer>>();
+        final int[] pendingPrerequisites = new int[size];
+
+        for(int i = 0 ; i < size ; i++){
+            dependents.add(new HashSet<Integer>());
+        }
+        for(int i = 0 ; i < size ; i++){
+            final GrapesNotification notification = notifications.get(i);
+            final Collection<NotificationType> prerequisites = getPrerequisites(notification);
+            for(int j = 0 ; j < size ; j++){
+                if(i != j && isPrerequisite(notifications.get(j), notification, prerequisites)){
+                    dependents.get(j).add(i);
+                    pendingPrerequisites[i]++;
+                }
+            }
+        }
+
+        final CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(POOL);
+        final boolean[] scheduled = new boolean[size];
+        final Exception[] failures = new Exception[size];
+        int running = 0;
+        int done = 0;
+
+        while(done < size){
+            if(handler.getDeadline().isExpired()){
+                done += postponeRemaining(build, notifications, scheduled, listener);
+                if(running == 0){
+                    break;
+                }
+            }
+
+            for(int i = 0 ; i < size ; i++){
+                if(!scheduled[i] && pendingPrerequisites[i] == 0){
+                    scheduled[i] = true;
+                    completionService.submit(new SendTask(i, notifications.get(i), build, failures));
+                    running++;
+                }
+            }
+
+            if(running == 0){
+                // Circular prerequisites: send the remaining notifications regardless of their ordering
+                GrapesPlugin.getLogger().warning("[GRAPES] Circular prerequisites between Grapes notifications of " + build.getFullDisplayName());
+                for(int i = 0 ; i < size ; i++){
+                    if(!scheduled[i]){
+                        pendingPrerequisites[i] = 0;
+                    }
+                }
+                continue;
+            }
+
+            final int index = waitFor(completionService);
+            running--;
+            done++;
+
+            if(failures[index] == null){
+                listener.onSent(index, notifications.get(index));
+                for(Integer dependent: dependents.get(index)){
+                    pendingPrerequisites[dependent]--;
+                }
+            }
+            else{
+                listener.onFailed(index, notifications.get(index), failures[index]);
+                done += postponeDependents(index, build, notifications, dependents, scheduled, listener);
+            }
+        }
+    }
+
+    /**
+     * Postpones, without sending them, all the notifications that depend on a failed one
+     *
+     * @return int the number of postponed notifications
+     */
+    private int postponeDependents(final int failed, final AbstractBuild<?, ?> build, final List<? extends GrapesNotification> notifications,
+                                   final List<Set<Integer>> dependents, final boolean[] scheduled, final Listener listener) {
+        int count = 0;
+        for(Integer dependent: dependents.get(failed)){
+            if(!scheduled[dependent]){
+                scheduled[dependent] = true;
+                final GrapesNotification notification = notifications.get(dependent);
+                handler.postpone(notification, build);
+                listener.onFailed(dependent, notification, new IllegalStateException("A prerequisite notification of " + notification.getModuleName() + " failed."));
+                count += 1 + postponeDependents(dependent, build, notifications, dependents, scheduled, listener);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Postpones, without sending them, all the notifications that are not started yet
+     *
+     * @return int the number of postponed notifications
+     */
+    private int postponeRemaining(final AbstractBuild<?, ?> build, final List<? extends GrapesNotification> notifications,
+                                  final boolean[] scheduled, final Listener listener) {
+        int count = 0;
+        for(int i = 0 ; i < notifications.size() ; i++){
+            if(!scheduled[i]){
+                scheduled[i] = true;
+                handler.postpone(notifications.get(i), build);
+                listener.onFailed(i, notifications.get(i), new IllegalStateException("Grapes notification time budget exhausted."));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int waitFor(final CompletionService<Integer> completionService) throws InterruptedException {
+        try {
+            return completionService.take().get();
+        } catch (ExecutionException e) {
+            // SendTask never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isPrerequisite(final GrapesNotification candidate, final GrapesNotification notification, final Collection<NotificationType> prerequisites) {
+        return prerequisites.contains(candidate.getNotificationAction()) &&
+                equals(candidate.getModuleName(), notification.getModuleName()) &&
+                equals(candidate.getModuleVersion(), notification.getModuleVersion());
+    }
+
+    private static boolean equals(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the prerequisites of a notification
+     *
+     * @param notification GrapesNotification
+     * @return Collection<NotificationType>
+     */
+    public static Collection<NotificationType> getPrerequisites(final GrapesNotification notification) {
+        if(notification instanceof ResendBuildAction){
+            return ((ResendBuildAction) notification).getPrerequisites();
+        }
+
+        final Descriptor<GrapesNotification> descriptor = Jenkins.getInstance().getDescriptor(notification.getClass());
+        if(descriptor instanceof GrapesNotificationDescriptor){
+            return ((GrapesNotificationDescriptor) descriptor).getPrerequisites(notification);
+        }
+
+        return GrapesNotificationDescriptor.getDefaultPrerequisites(notification.getNotificationAction());
+    }
+
+    private class SendTask implements Callable<Integer> {
+
+        private final int index;
+        private final GrapesNotification notification;
+        private final AbstractBuild<?, ?> build;
+        private final Exception[] failures;
+
+        public SendTask(final int index, final GrapesNotification notification, final AbstractBuild<?, ?> build, final Exception[] failures) {
+            this.index = index;
+            this.notification = notification;
+            this.build = build;
+            this.failures = failures;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                handler.send(notification, build);
+            } catch (Exception e) {
+                failures[index] = e;
+            }
+            return index;
+        }
+    }
+}
@@ -8,16 +8,18 @@ import hudson.maven.MavenModuleSet;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import org.apache.commons.lang.StringUtils;
-import org.axway.grapes.commons.datamodel.Module;
 import org.axway.grapes.jenkins.GrapesNotifier;
 import org.axway.grapes.jenkins.GrapesPlugin;
 import org.axway.grapes.jenkins.notifications.GrapesNotification;
 import org.axway.grapes.jenkins.notifications.GrapesNotificationDescriptor;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.logging.Level;
@@ -81,7 +83,7 @@ public class BuildInfoNotification extends GrapesNotification {
                 }
 
                 final FilePath moduleFile = GrapesPlugin.getBuildModuleFile(build);
-                final Module module = GrapesPlugin.getModule(moduleFile);
+                final ModuleHeader module = GrapesPlugin.getModuleHeader(moduleFile);
 
                 final BuildInfoNotification notification = new BuildInfoNotification();
                 notification.setModuleName(module.getName());
@@ -96,6 +98,36 @@ public class BuildInfoNotification extends GrapesNotification {
 
             return null;
         }
+
+        @Override
+        public List<GrapesNotification> createAutoInstances(final AbstractBuild<?, ?> build) {
+            final List<GrapesNotification> notifications = new ArrayList<GrapesNotification>();
+            try{
+                final GrapesNotifier notifier = GrapesPlugin.getGrapesNotifier(build.getProject());
+                if(notifier == null || !notifier.getManageBuildInfo()){
+                    return notifications;
+                }
+
+                // The build info of the build completes each module report of the build
+                for(FilePath moduleFile: GrapesPlugin.getBuildModuleFiles(build)){
+                    try{
+                        final ModuleHeader module = GrapesPlugin.getModuleHeader(moduleFile);
+
+                        final BuildInfoNotification notification = new BuildInfoNotification();
+                        notification.setModuleName(module.getName());
+                        notification.setModuleVersion(module.getVersion());
+                        notification.setMimePath(GrapesPlugin.getBuildBuildInfoFile(build));
+                        notifications.add(notification);
+                    } catch (Exception e) {
+                        GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to get build Module buildInfo " + moduleFile.getRemote(), e);
+                    }
+                }
+            } catch (Exception e) {
+                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to get build Module buildInfo ", e);
+            }
+
+            return notifications;
+        }
     }
 
     public static Map<String,String> getBuildInfo(final AbstractBuild<?, ?> build, final BuildListener listener) throws IOException, InterruptedException {
@@ -3,12 +3,15 @@ package org.axway.grapes.jenkins.notifications.maven;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.model.AbstractBuild;
-import org.axway.grapes.commons.datamodel.Module;
 import org.axway.grapes.jenkins.GrapesNotifier;
 import org.axway.grapes.jenkins.GrapesPlugin;
 import org.axway.grapes.jenkins.notifications.GrapesNotification;
 import org.axway.grapes.jenkins.notifications.GrapesNotificationDescriptor;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 /**
@@ -66,7 +69,6 @@ public class GrapesMavenPluginNotification extends GrapesNotification {
 
         @Override
         public GrapesNotification createAutoInstance(AbstractBuild<?, ?> build) {
-            GrapesMavenPluginNotification notification = null;
             try{
                 final GrapesNotifier notifier = GrapesPlugin.getGrapesNotifier(build.getProject());
                 if(notifier == null || !notifier.getManageGrapesMavenPlugin()){
@@ -78,16 +80,56 @@ public class GrapesMavenPluginNotification extends GrapesNotification {
                     return null;
                 }
 
-                final Module module = GrapesPlugin.getModule(moduleFilePath);
-
-                notification = new GrapesMavenPluginNotification();
-                notification.setModuleName(module.getName());
-                notification.setModuleVersion(module.getVersion());
-                notification.setModuleFilePath(moduleFilePath);
+                return createNotification(moduleFilePath);
             } catch (Exception e) {
                 GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to get build Maven Grapes report ", e);
             }
 
+            return null;
+        }
+
+        @Override
+        public List<GrapesNotification> createAutoInstances(final AbstractBuild<?, ?> build) {
+            final List<GrapesNotification> notifications = new ArrayList<GrapesNotification>();
+            try{
+                final GrapesNotifier notifier = GrapesPlugin.getGrapesNotifier(build.getProject());
+                if(notifier == null || !notifier.getManageGrapesMavenPlugin()){
+                    return notifications;
+                }
+
+                notifications.addAll(createNotifications(GrapesPlugin.getBuildModuleFiles(build)));
+            } catch (Exception e) {
+                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to get build Maven Grapes reports ", e);
+            }
+
+            return notifications;
+        }
+
+        /**
+         * Creates the notifications of module reports in their order, the reports that cannot be read are skipped
+         *
+         * @param moduleFiles List<FilePath>
+         * @return List<GrapesNotification>
+         */
+        static List<GrapesNotification> createNotifications(final List<FilePath> moduleFiles) {
+            final List<GrapesNotification> notifications = new ArrayList<GrapesNotification>();
+            for(FilePath moduleFilePath: moduleFiles){
+                try{
+                    notifications.add(createNotification(moduleFilePath));
+                } catch (Exception e) {
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to get build Maven Grapes report " + moduleFilePath.getRemote(), e);
+                }
+            }
+            return notifications;
+        }
+
+        private static GrapesNotification createNotification(final FilePath moduleFilePath) throws IOException, InterruptedException {
+            final ModuleHeader module = GrapesPlugin.getModuleHeader(moduleFilePath);
+
+            final GrapesMavenPluginNotification notification = new GrapesMavenPluginNotification();
+            notification.setModuleName(module.getName());
+            notification.setModuleVersion(module.getVersion());
+            notification.setModuleFilePath(moduleFilePath);
             return notification;
         }
     }
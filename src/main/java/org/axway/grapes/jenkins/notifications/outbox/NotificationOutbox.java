@@ -0,0 +1,276 @@
+package org.axway.grapes.jenkins.notifications.outbox;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import jenkins.model.Jenkins;
+import org.axway.grapes.commons.utils.FileUtils;
+import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.NotificationHandler;
+import org.axway.grapes.jenkins.notifications.NotificationScheduler;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Notification Outbox
+ *
+ * <p>Disk-backed queue of the notifications to send to Grapes servers.
+ * The notifier only enqueues the notifications of a build, a bounded pool of background dispatchers sends them afterwards
+ * so that a slow Grapes server delays the builds that are being dispatched only, not all the queued ones.
+ * Pending entries are stored in JENKINS_HOME so they survive a restart of Jenkins.</p>
+ *
+ * @author jdcoffre
+ */
+public final class NotificationOutbox {
+
+    public static final String OUTBOX_FOLDER = "outbox";
+
+    private static final String ENTRY_SUFFIX = ".json";
+
+    // Number of builds whose notifications are dispatched at the same time
+    public static final int DISPATCHER_THREADS = Integer.getInteger(NotificationOutbox.class.getName() + ".dispatcherThreads", 4);
+
+    private static final NotificationOutbox INSTANCE = new NotificationOutbox();
+
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(DISPATCHER_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("Grapes notification dispatcher %d").setDaemon(true).build());
+
+    private NotificationOutbox() {
+    }
+
+    public static NotificationOutbox getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Restores the entries that were waiting in the outbox when Jenkins stopped
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void restore() {
+        INSTANCE.restorePendingEntries();
+    }
+
+    /**
+     * Returns the folder that holds the pending entries
+     *
+     * @return File
+     */
+    public static File getOutboxFolder() {
+        final File grapesFolder = new File(Jenkins.getInstance().getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER);
+        return new File(grapesFolder, OUTBOX_FOLDER);
+    }
+
+    /**
+     * Persists the notifications of a build and schedules their sending
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param config GrapesConfig
+     * @param notifications List<GrapesNotification>
+     * @param buildLogger PrintStream the build log, used to report the delivery while the build is running
+     * @return OutboxEntry
+     * @throws IOException
+     */
+    public OutboxEntry enqueue(final AbstractBuild<?, ?> build, final GrapesConfig config, final List<GrapesNotification> notifications, final PrintStream buildLogger) throws IOException {
+        final OutboxEntry entry = store(build, config, notifications);
+        submit(entry, buildLogger);
+
+        return entry;
+    }
+
+    /**
+     * Persists the notifications of a build without scheduling their sending
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param config GrapesConfig
+     * @param notifications List<GrapesNotification>
+     * @return OutboxEntry
+     * @throws IOException
+     */
+    OutboxEntry store(final AbstractBuild<?, ?> build, final GrapesConfig config, final List<GrapesNotification> notifications) throws IOException {
+        final OutboxEntry entry = new OutboxEntry();
+        entry.setId(UUID.randomUUID().toString());
+        entry.setProjectName(build.getProject().getFullName());
+        entry.setBuildNumber(build.getNumber());
+        entry.setConfigName(config.getName());
+
+        final List<ResendBuildAction> toSend = new ArrayList<ResendBuildAction>();
+        for(GrapesNotification notification: notifications){
+            toSend.add(new ResendBuildAction(notification, NotificationScheduler.getPrerequisites(notification)));
+        }
+        entry.setNotifications(toSend);
+
+        final File outboxFolder = getOutboxFolder();
+        if(!outboxFolder.exists() && !outboxFolder.mkdirs()){
+            throw new IOException("[GRAPES] Failed to create the outbox folder " + outboxFolder.getPath());
+        }
+        FileUtils.serialize(outboxFolder, JsonUtils.serialize(entry), entry.getId() + ENTRY_SUFFIX);
+
+        return entry;
+    }
+
+    /**
+     * Loads and schedules all the entries stored in the outbox folder
+     */
+    void restorePendingEntries() {
+        final File outboxFolder = getOutboxFolder();
+        if(!outboxFolder.exists()){
+            return;
+        }
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.disable(MapperFeature.USE_GETTERS_AS_SETTERS);
+
+        for(File file: outboxFolder.listFiles()){
+            if(file.getName().endsWith(ENTRY_SUFFIX)){
+                try{
+                    final OutboxEntry entry = mapper.readValue(FileUtils.read(file), OutboxEntry.class);
+                    submit(entry, null);
+                } catch (Exception e){
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to restore a pending notification from " + file.getName(), e);
+                }
+            }
+        }
+    }
+
+    private void submit(final OutboxEntry entry, final PrintStream buildLogger) {
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    dispatch(entry, buildLogger);
+                } catch (RuntimeException e){
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to dispatch the notifications of " + entry.getProjectName() + " #" + entry.getBuildNumber() +
+                            ", they are handed over to the resend mechanism.", e);
+                    handOver(entry);
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands the notifications of an entry over to the resend mechanism without sending them.
+     * If that fails as well, the entry is kept in the outbox and sent at next startup.
+     *
+     * @param entry OutboxEntry
+     */
+    private void handOver(final OutboxEntry entry) {
+        try{
+            final AbstractBuild<?, ?> build = getBuild(entry);
+            final GrapesConfig config = getConfiguration(entry.getConfigName());
+            if(build != null && config != null){
+                final NotificationHandler notifHandler = new NotificationHandler(config);
+                for(ResendBuildAction notification: entry.getNotifications()){
+                    notifHandler.postpone(notification, build);
+                }
+            }
+            remove(entry);
+        } catch (RuntimeException e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to hand over the notifications of " + entry.getProjectName() + " #" + entry.getBuildNumber() +
+                    ", they will be sent at next startup.", e);
+        }
+    }
+
+    /**
+     * Sends the notifications of an entry, failed notifications are handed over to the resend mechanism
+     *
+     * @param entry OutboxEntry
+     * @param buildLogger PrintStream (null if the build log is not available anymore)
+     */
+    private void dispatch(final OutboxEntry entry, final PrintStream buildLogger) {
+        final AbstractBuild<?, ?> build = getBuild(entry);
+        final GrapesNotifierDescriptor descriptor = getDescriptor();
+        final GrapesConfig config = getConfiguration(entry.getConfigName());
+
+        if(build == null || config == null){
+            GrapesPlugin.getLogger().severe("[GRAPES] Dropping notifications of " + entry.getProjectName() + " #" + entry.getBuildNumber() + ": build or Grapes configuration not found.");
+            remove(entry);
+            return;
+        }
+
+        final NotificationHandler notifHandler = new NotificationHandler(config, false, descriptor.newNotificationDeadline());
+        final List<ResendBuildAction> notifications = entry.getNotifications();
+        try{
+            new NotificationScheduler(notifHandler).send(build, notifications, new NotificationScheduler.Listener() {
+                @Override
+                public void onSent(final int index, final GrapesNotification notification) {
+                    log(build, buildLogger, "[GRAPES] Grapes notification " + (index + 1) + "/" + notifications.size() + " has been delivered successfully");
+                }
+
+                @Override
+                public void onFailed(final int index, final GrapesNotification notification, final Exception cause) {
+                    log(build, buildLogger, "[GRAPES] Grapes notification " + (index + 1) + "/" + notifications.size() + " has been postponed. Check your Grapes server configuration & if the Grapes server is available");
+                    GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Grapes Notification failed:", cause);
+                }
+            });
+        } catch (InterruptedException e) {
+            // Keep the entry in the outbox, it will be sent at next startup
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Grapes notification dispatch interrupted", e);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // The build record has already been written, persist the report action that may have been added
+        if(!build.isBuilding()){
+            try {
+                build.save();
+            } catch (IOException e) {
+                GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to save " + build.getFullDisplayName(), e);
+            }
+        }
+
+        remove(entry);
+    }
+
+    private void log(final AbstractBuild<?, ?> build, final PrintStream buildLogger, final String message) {
+        if(buildLogger != null && build.isBuilding()){
+            buildLogger.println(message);
+        }
+        else{
+            GrapesPlugin.getLogger().info(message + " (" + build.getFullDisplayName() + ")");
+        }
+    }
+
+    private void remove(final OutboxEntry entry) {
+        final File entryFile = new File(getOutboxFolder(), entry.getId() + ENTRY_SUFFIX);
+        if(entryFile.exists() && !entryFile.delete()){
+            GrapesPlugin.getLogger().warning("[GRAPES] Failed to remove outbox entry " + entryFile.getPath());
+        }
+    }
+
+    private static AbstractBuild<?, ?> getBuild(final OutboxEntry entry) {
+        final AbstractProject<?, ?> project = Jenkins.getInstance().getItemByFullName(entry.getProjectName(), AbstractProject.class);
+        if(project == null){
+            return null;
+        }
+        return project.getBuildByNumber(entry.getBuildNumber());
+    }
+
+    private static GrapesNotifierDescriptor getDescriptor() {
+        return Jenkins.getInstance().getDescriptorByType(GrapesNotifierDescriptor.class);
+    }
+
+    private static GrapesConfig getConfiguration(final String configName) {
+        final GrapesNotifierDescriptor descriptor = getDescriptor();
+        if(descriptor == null || descriptor.getServers() == null){
+            return null;
+        }
+        return descriptor.getConfiguration(configName);
+    }
+}
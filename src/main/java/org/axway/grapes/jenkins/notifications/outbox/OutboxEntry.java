@@ -0,0 +1,66 @@
+package org.axway.grapes.jenkins.notifications.outbox;
+
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outbox Entry
+ *
+ * <p>Persisted unit of work of the notification outbox: the notifications of one build that are waiting to be sent.</p>
+ *
+ * @author jdcoffre
+ */
+public class OutboxEntry {
+
+    private String id;
+
+    private String projectName;
+
+    private int buildNumber;
+
+    private String configName;
+
+    private List<ResendBuildAction> notifications = new ArrayList<ResendBuildAction>();
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(final String projectName) {
+        this.projectName = projectName;
+    }
+
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    public void setBuildNumber(final int buildNumber) {
+        this.buildNumber = buildNumber;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public void setConfigName(final String configName) {
+        this.configName = configName;
+    }
+
+    public List<ResendBuildAction> getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(final List<ResendBuildAction> notifications) {
+        this.notifications = notifications;
+    }
+}
@@ -0,0 +1,118 @@
+package org.axway.grapes.jenkins.reports;
+
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent Publication
+ *
+ * <p>Posts a module report and its build info to Grapes server from the agent that produced the report.
+ * Used when the Grapes server configuration requires the agents to publish (see {@link GrapesConfig#isPublishFromAgent()}).
+ * A failure is reported in the {@link ReportSummary}, the notifications are then sent by the master as usual.</p>
+ * <p>All the reports published with the same instance share the notification time budget, which starts on the agent
+ * with the first publication. The build waits for the publication, so it can last up to this budget.</p>
+ * <p>The publisher credentials of the configuration are sent to the agent, only if the configuration has some.</p>
+ *
+ * @author jdcoffre
+ */
+public class AgentPublication implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final String port;
+    private final int connectTimeout;
+    private final int requestTimeout;
+
+    // Written only if the configuration has publisher credentials, see writeObject
+    private transient String user;
+    private transient String password;
+
+    // null if there is no build info to post
+    private final HashMap<String, String> buildInfo;
+
+    // Time budget of the publications in seconds
+    private final int budget;
+
+    // Started on the agent: System.nanoTime() cannot be compared between JVMs
+    private transient Deadline deadline;
+
+    /**
+     * @param config GrapesConfig
+     * @param buildInfo Map<String, String> (null if there is no build info to post)
+     * @param budget int time budget of the publications in seconds
+     */
+    public AgentPublication(final GrapesConfig config, final Map<String, String> buildInfo, final int budget) {
+        this.budget = budget;
+        this.host = config.getHost();
+        this.port = String.valueOf(config.getPort());
+        this.connectTimeout = config.getTimeout();
+        this.requestTimeout = config.getRequestTimeout();
+        this.buildInfo = buildInfo == null ? null : new HashMap<String, String>(buildInfo);
+
+        if (config.getPublisherCredentials() != null) {
+            user = config.getPublisherCredentials().getUsername();
+            password = config.getPublisherCredentials().getPassword();
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        final boolean hasCredentials = user != null || password != null;
+        out.writeBoolean(hasCredentials);
+        if(hasCredentials){
+            out.writeObject(user);
+            out.writeObject(password);
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if(in.readBoolean()){
+            user = (String) in.readObject();
+            password = (String) in.readObject();
+        }
+    }
+
+    public Map<String, String> getBuildInfo() {
+        return buildInfo;
+    }
+
+    private synchronized Deadline getDeadline() {
+        if(deadline == null){
+            deadline = Deadline.after(budget, TimeUnit.SECONDS);
+        }
+        return deadline;
+    }
+
+    /**
+     * Posts the module and its build info, stops at the first failure
+     *
+     * @param module Module
+     * @param summary ReportSummary that receives the result of the publication
+     */
+    public void publish(final Module module, final ReportSummary summary) {
+        final PooledGrapesClient client = new PooledGrapesClient(host, port, 1, connectTimeout, requestTimeout).withDeadline(getDeadline());
+        try{
+            client.postModule(module, user, password);
+            summary.setModuleDelivered(true);
+
+            if(buildInfo != null){
+                client.postBuildInfo(module.getName(), module.getVersion(), buildInfo, user, password);
+                summary.setBuildInfoDelivered(true);
+            }
+        } catch (Exception e) {
+            summary.setPublicationError(e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.axway.grapes.jenkins.reports;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import hudson.model.Action;
 import org.axway.grapes.commons.datamodel.Artifact;
 import org.axway.grapes.commons.datamodel.Dependency;
@@ -7,13 +8,24 @@ import org.axway.grapes.commons.datamodel.Module;
 import org.axway.grapes.commons.datamodel.Organization;
 import org.axway.grapes.commons.utils.ModuleUtils;
 import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
 import org.axway.grapes.utils.client.GrapesClient;
 import org.axway.grapes.utils.client.GrapesCommunicationException;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -28,6 +40,16 @@ public class GrapesBuildAction implements Action {
 
     private static final String REPORT_ACTION_ICON = "img/report-icon.png";
 
+    public static final String UNKNOWN = "unknown";
+
+    public static final int POOL_SIZE = Integer.getInteger(GrapesBuildAction.class.getName() + ".poolSize", 8);
+
+    // Time budget of the lookups of a report in seconds
+    public static final int BUDGET = Integer.getInteger(GrapesBuildAction.class.getName() + ".budget", 30);
+
+    private static final ExecutorService LOOKUP_EXECUTOR = Executors.newFixedThreadPool(POOL_SIZE,
+            new ThreadFactoryBuilder().setNameFormat("Grapes report lookup %d").setDaemon(true).build());
+
     // The module file that has been sent during the build is this one
     private Module module;
 
@@ -35,6 +57,9 @@ public class GrapesBuildAction implements Action {
     private List<Dependency> thirdParty;
     private List<Dependency> ancestors;
 
+    // True if the ancestors have not been received in time
+    private boolean ancestorsUnknown = false;
+
     private boolean initOk = false;
 
     // Title of the report
@@ -56,6 +81,19 @@ public class GrapesBuildAction implements Action {
      * @param grapesClient GrapesClient
      */
     public GrapesBuildAction(final Module module, final GrapesClient grapesClient) {
+        this(module, grapesClient == null ? null : new PooledGrapesClient(grapesClient, PooledGrapesClient.DEFAULT_MAX_CONNECTIONS));
+    }
+
+    /**
+     * Initiate the report
+     *
+     * <p>The lookups are performed concurrently and bounded by a time budget.
+     * The last versions and the ancestors that are not received in time are reported as unknown.</p>
+     *
+     * @param module Module
+     * @param grapesClient PooledGrapesClient
+     */
+    public GrapesBuildAction(final Module module, final PooledGrapesClient grapesClient) {
        if(grapesClient == null ||
                 module == null ){
             return;
@@ -63,29 +101,83 @@ public class GrapesBuildAction implements Action {
 
         title = "Dependency  report of " + module.getName() + " in version " + module.getVersion();
 
+        // The lookups must fit both in the report budget and in the budget of the notifications
+        final long budget = Math.min(TimeUnit.SECONDS.toMillis(BUDGET), grapesClient.getDeadline().remaining());
+        final Deadline deadline = Deadline.after(budget, TimeUnit.MILLISECONDS);
+        final PooledGrapesClient client = grapesClient.withDeadline(deadline);
+
         // Init the report with Grapes server information
+        final List<Future<?>> lookups = new ArrayList<Future<?>>();
         try{
-            final Organization organization = grapesClient.getModuleOrganization(module.getName(), module.getVersion());
+            final Future<List<Dependency>> ancestorsLookup = LOOKUP_EXECUTOR.submit(new Callable<List<Dependency>>() {
+                @Override
+                public List<Dependency> call() throws Exception {
+                    return client.getModuleAncestors(module.getName(), module.getVersion());
+                }
+            });
+            lookups.add(ancestorsLookup);
+
+            final Organization organization = client.getModuleOrganization(module.getName(), module.getVersion());
             final List<String> corporateFilters = organization.getCorporateGroupIdPrefixes();
-            dependencies = new HashMap<Dependency, String>();
 
-            final List<Dependency> moduleDependencies = ModuleUtils.getCorporateDependencies(module, corporateFilters);
-            for(Dependency dependency: moduleDependencies){
-                final String lastVersion = getLastVersion(grapesClient, dependency);
-                this.dependencies.put(dependency, lastVersion);
+            final Map<Dependency, Future<String>> lastVersionLookups = new LinkedHashMap<Dependency, Future<String>>();
+            for(final Dependency dependency: ModuleUtils.getCorporateDependencies(module, corporateFilters)){
+                final Future<String> lastVersionLookup = LOOKUP_EXECUTOR.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return getLastVersion(client, dependency);
+                    }
+                });
+                lastVersionLookups.put(dependency, lastVersionLookup);
+                lookups.add(lastVersionLookup);
             }
 
             thirdParty = ModuleUtils.getThirdPartyLibraries(module, corporateFilters);
-            ancestors = grapesClient.getModuleAncestors(module.getName(), module.getVersion());
+
+            dependencies = new HashMap<Dependency, String>();
+            for(Map.Entry<Dependency, Future<String>> lastVersionLookup: lastVersionLookups.entrySet()){
+                final String lastVersion = await(lastVersionLookup.getValue(), deadline);
+                this.dependencies.put(lastVersionLookup.getKey(), lastVersion == null ? UNKNOWN : lastVersion);
+            }
+
+            ancestors = await(ancestorsLookup, deadline);
+            if(ancestors == null){
+                ancestors = Collections.emptyList();
+                ancestorsUnknown = true;
+            }
 
             initOk = true;
 
         } catch (Exception e){
             GrapesPlugin.getLogger().log(Level.WARNING, "Failed to generate build dependency report for " + module.getName(), e);
+        } finally {
+            // Do not keep looking up what will not be displayed
+            for(Future<?> lookup: lookups){
+                lookup.cancel(true);
+            }
         }
 
     }
 
+    /**
+     * Waits for the result of a lookup until the deadline
+     *
+     * @param lookup Future<T>
+     * @param deadline Deadline
+     * @return T the result, null if it has not been received in time or if the lookup failed
+     * @throws InterruptedException
+     */
+    private static <T> T await(final Future<T> lookup, final Deadline deadline) throws InterruptedException {
+        try {
+            return lookup.get(deadline.remaining(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            GrapesPlugin.getLogger().log(Level.INFO, "[GRAPES] Grapes report lookup failed", e.getCause());
+            return null;
+        }
+    }
+
     public String getIconFileName() {
         return GrapesPlugin.getPluginResourcePath() + REPORT_ACTION_ICON;
     }
@@ -106,13 +198,18 @@ public class GrapesBuildAction implements Action {
      * @param dependency Dependency
      * @return String
      */
-    public String getLastVersion(final GrapesClient grapesClient, final Dependency dependency){
+    public String getLastVersion(final PooledGrapesClient grapesClient, final Dependency dependency){
         final Logger logger = LogManager.getLogManager().getLogger("hudson.WebAppMain");
         try{
             final Artifact target = dependency.getTarget();
             return grapesClient.getArtifactLastVersion(target.getGavc());
         } catch (GrapesCommunicationException e) {
             logger.info("Failed to get last version of : " + dependency.getTarget().getGavc());
+
+            // No answer in time
+            if(e.getHttpStatus() == 504){
+                return UNKNOWN;
+            }
         }
          return "";
     }
@@ -157,6 +254,10 @@ public class GrapesBuildAction implements Action {
         return module;
     }
 
+    public boolean isAncestorsUnknown() {
+        return ancestorsUnknown;
+    }
+
     public boolean isInitOk() {
         return initOk;
     }
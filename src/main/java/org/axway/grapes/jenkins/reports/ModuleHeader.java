@@ -0,0 +1,32 @@
+package org.axway.grapes.jenkins.reports;
+
+import java.io.Serializable;
+
+/**
+ * Module Header
+ *
+ * <p>Identification of the module described by a Grapes report: its name and its version.</p>
+ *
+ * @author jdcoffre
+ */
+public class ModuleHeader implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+
+    private final String version;
+
+    public ModuleHeader(final String name, final String version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
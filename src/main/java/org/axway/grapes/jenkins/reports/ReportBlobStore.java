@@ -0,0 +1,514 @@
+package org.axway.grapes.jenkins.reports;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.GrapesPlugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Report Blob Store
+ *
+ * <p>Content-addressed store of the module reports: each distinct report is stored once in JENKINS_HOME,
+ * named after its digest, and the build folders only keep a small reference file in place of the report.
+ * {@link ReportStorage} follows the references, so the reports are read the same way wherever they are stored.</p>
+ * <p>The store counts the references of each report and deletes a report when its last reference is gone,
+ * after a build or a project deletion. The references are indexed in JENKINS_HOME.
+ * A marker file exists while the references and the index may disagree: if Jenkins stops before the index is saved,
+ * the index is rebuilt from the build folders at next start, so a report is never deleted while it is still referenced.</p>
+ *
+ * @author jdcoffre
+ */
+public final class ReportBlobStore {
+
+    public static final String BLOB_FOLDER = "blobs";
+
+    public static final String INDEX_FILE = "blob-references";
+
+    public static final String PENDING_FILE = INDEX_FILE + ".pending";
+
+    public static final String REFERENCE_PREFIX = "#grapes-blob:";
+
+    private static final String SEPARATOR = "|";
+
+    private static final Pattern BUILD_NUMBER = Pattern.compile("\\d+");
+
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{32}");
+
+    private static ReportBlobStore instance;
+
+    // path of the reference relative to JENKINS_HOME -> digest of the report
+    private final TreeMap<String, String> references = new TreeMap<String, String>();
+
+    // digest of the report -> number of references
+    private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+    private final File file;
+
+    // Exists while the references of the build folders may not match the index
+    private final File pendingFile;
+
+    private ReportBlobStore(final File file) {
+        this.file = file;
+        this.pendingFile = new File(file.getParentFile(), PENDING_FILE);
+    }
+
+    /**
+     * Returns the store, loads or rebuilds its index at first call
+     *
+     * @return ReportBlobStore
+     */
+    public static synchronized ReportBlobStore get() {
+        if(instance == null){
+            instance = open();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the index, or rebuilds it if it is missing or if an update of the references has been interrupted
+     *
+     * @return ReportBlobStore
+     */
+    static ReportBlobStore open() {
+        final ReportBlobStore store = new ReportBlobStore(new File(getGrapesFolder(), INDEX_FILE));
+        if(store.file.exists() && !store.pendingFile.exists()){
+            store.load();
+        }
+        else{
+            if(store.pendingFile.exists()){
+                GrapesPlugin.getLogger().warning("[GRAPES] The update of the report blob index has been interrupted, rebuilding it.");
+            }
+            store.rebuild();
+        }
+        return store;
+    }
+
+    /**
+     * Checks if the reports of the build folders are stored once in the blob store
+     *
+     * @return boolean
+     */
+    public static boolean isEnabled() {
+        final Jenkins jenkins = Jenkins.getInstance();
+        final GrapesNotifierDescriptor descriptor = jenkins == null ? null : jenkins.getDescriptorByType(GrapesNotifierDescriptor.class);
+        return descriptor != null && descriptor.getDeduplicateReports();
+    }
+
+    /**
+     * Returns the store if it has ever been used, so the build folders are not scanned for nothing
+     *
+     * @return ReportBlobStore (null if the store has never been used)
+     */
+    private static synchronized ReportBlobStore getIfUsed() {
+        if(instance == null && !new File(getGrapesFolder(), INDEX_FILE).exists()){
+            return null;
+        }
+        return get();
+    }
+
+    /**
+     * Returns the file of a report in the store
+     *
+     * @param digest String
+     * @return FilePath
+     */
+    public static FilePath getBlob(final String digest) {
+        final File blobFolder = new File(new File(getGrapesFolder(), BLOB_FOLDER), digest.substring(0, 2));
+        return new FilePath(new File(blobFolder, digest));
+    }
+
+    /**
+     * Returns the digest of the report referenced by a file of a build folder
+     *
+     * @param report FilePath
+     * @return String (null if the file is not a reference)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static String getReferencedDigest(final FilePath report) throws IOException, InterruptedException {
+        final InputStream in = report.read();
+        try{
+            return readReference(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Reads a reference from the beginning of a stream
+     *
+     * @param in InputStream
+     * @return String the digest of the referenced report (null if the stream is not a reference)
+     * @throws IOException
+     */
+    static String readReference(final InputStream in) throws IOException {
+        final byte[] header = new byte[REFERENCE_PREFIX.length() + 32];
+        int length = 0;
+        int read;
+        while(length < header.length && (read = in.read(header, length, header.length - length)) > 0){
+            length += read;
+        }
+
+        final String content = new String(header, 0, length, "UTF-8");
+        if(!content.startsWith(REFERENCE_PREFIX)){
+            return null;
+        }
+
+        final String digest = content.substring(REFERENCE_PREFIX.length());
+        if(!DIGEST.matcher(digest).matches()){
+            throw new IOException("[GRAPES] Invalid report reference: " + content);
+        }
+        return digest;
+    }
+
+    /**
+     * Replaces a report of a build folder by a reference to the stored report with the same digest
+     *
+     * @param report FilePath the report in the build folder
+     * @param digest String
+     * @return boolean false if the store does not hold the report yet
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized boolean reference(final FilePath report, final String digest) throws IOException, InterruptedException {
+        if(!getBlob(digest).exists()){
+            return false;
+        }
+
+        beginUpdate();
+        report.write(REFERENCE_PREFIX + digest, "UTF-8");
+
+        final String previous = references.put(getKey(new File(report.getRemote())), digest);
+        if(!digest.equals(previous)){
+            increment(digest);
+            if(previous != null){
+                decrement(previous);
+            }
+        }
+        save();
+        return true;
+    }
+
+    /**
+     * Returns a new temporary file of the store, to be moved by {@link #add(FilePath, String)}
+     *
+     * @return FilePath
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public FilePath createTempFile() throws IOException, InterruptedException {
+        final FilePath blobFolder = new FilePath(new File(getGrapesFolder(), BLOB_FOLDER));
+        blobFolder.mkdirs();
+        return blobFolder.createTempFile("report", ".tmp");
+    }
+
+    /**
+     * Moves a report into the store
+     *
+     * @param tempFile FilePath a temporary file created by {@link #createTempFile()}
+     * @param digest String the digest of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized void add(final FilePath tempFile, final String digest) throws IOException, InterruptedException {
+        final FilePath blob = getBlob(digest);
+        if(blob.exists()){
+            tempFile.delete();
+            return;
+        }
+        blob.getParent().mkdirs();
+        tempFile.renameTo(blob);
+    }
+
+    /**
+     * Returns the number of distinct reports held by the store
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return counts.size();
+    }
+
+    private void increment(final String digest) {
+        final Integer count = counts.get(digest);
+        counts.put(digest, count == null ? 1 : count + 1);
+    }
+
+    private void decrement(final String digest) {
+        final Integer count = counts.get(digest);
+        if(count == null || count <= 1){
+            counts.remove(digest);
+            deleteBlob(digest);
+        }
+        else{
+            counts.put(digest, count - 1);
+        }
+    }
+
+    private static void deleteBlob(final String digest) {
+        try{
+            getBlob(digest).delete();
+        } catch (Exception e) {
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to delete the stored report " + digest, e);
+        }
+    }
+
+    /**
+     * Returns the number of references to a report
+     *
+     * @param digest String
+     * @return int
+     */
+    synchronized int getReferenceCount(final String digest) {
+        final Integer count = counts.get(digest);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Releases the references stored in a folder
+     *
+     * @param folder File
+     */
+    synchronized void release(final File folder) {
+        final SortedMap<String, String> released = getReferences(getKey(folder));
+        if(released.isEmpty()){
+            return;
+        }
+
+        try{
+            beginUpdate();
+        } catch (IOException e){
+            // The reports stay stored, nothing is lost
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to release the stored reports of " + folder.getPath(), e);
+            return;
+        }
+        final List<String> digests = new ArrayList<String>(released.values());
+        released.clear();
+        for(String digest: digests){
+            decrement(digest);
+        }
+        save();
+    }
+
+    /**
+     * Moves the references stored in a folder to another folder
+     *
+     * @param oldFolder File
+     * @param newFolder File
+     */
+    synchronized void move(final File oldFolder, final File newFolder) {
+        final String oldPrefix = getKey(oldFolder) + "/";
+        final SortedMap<String, String> moved = getReferences(getKey(oldFolder));
+        if(moved.isEmpty()){
+            return;
+        }
+
+        try{
+            beginUpdate();
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to move the stored report references of " + oldFolder.getPath(), e);
+            return;
+        }
+        final Map<String, String> copy = new HashMap<String, String>(moved);
+        moved.clear();
+        final String newPrefix = getKey(newFolder) + "/";
+        for(Map.Entry<String, String> reference: copy.entrySet()){
+            references.put(newPrefix + reference.getKey().substring(oldPrefix.length()), reference.getValue());
+        }
+        save();
+    }
+
+    private SortedMap<String, String> getReferences(final String folderKey) {
+        final String prefix = folderKey + "/";
+        return references.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static File getGrapesFolder() {
+        return new File(Jenkins.getInstance().getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER);
+    }
+
+    /**
+     * Returns the path of a file relative to JENKINS_HOME, with '/' as separator
+     */
+    private static String getKey(final File file) {
+        final String root = Jenkins.getInstance().getRootDir().getAbsolutePath();
+        String path = file.getAbsolutePath();
+        if(path.startsWith(root + File.separator)){
+            path = path.substring(root.length() + 1);
+        }
+        return path.replace(File.separatorChar, '/');
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try{
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null){
+                // line format: <digest>|<path relative to JENKINS_HOME>
+                final String[] fields = line.split("\\" + SEPARATOR, 2);
+                if(fields.length == 2){
+                    references.put(fields[1], fields[0]);
+                    increment(fields[0]);
+                }
+            }
+        } catch (Exception e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to load the report blob index, rebuilding it.", e);
+            references.clear();
+            counts.clear();
+            rebuild();
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Marks the index as out of date until the next successful save
+     *
+     * @throws IOException
+     */
+    private void beginUpdate() throws IOException {
+        pendingFile.getParentFile().mkdirs();
+        if(!pendingFile.exists() && !pendingFile.createNewFile()){
+            throw new IOException("[GRAPES] Failed to create " + pendingFile.getPath());
+        }
+    }
+
+    private void save() {
+        try{
+            file.getParentFile().mkdirs();
+            final AtomicFileWriter writer = new AtomicFileWriter(file);
+            try{
+                for(Map.Entry<String, String> reference: references.entrySet()){
+                    writer.write(reference.getValue() + SEPARATOR + reference.getKey() + "\n");
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+            // The index matches the references again
+            pendingFile.delete();
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to save the report blob index.", e);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the references stored in the build folders, then deletes the reports that are not referenced anymore
+     */
+    private void rebuild() {
+        for(AbstractProject<?, ?> project: Jenkins.getInstance().getAllItems(AbstractProject.class)){
+            final File[] buildFolders = project.getBuildDir().listFiles();
+            if(buildFolders == null){
+                continue;
+            }
+
+            // Build folders are reachable through their number, no need to load the builds
+            for(File buildFolder: buildFolders){
+                if(BUILD_NUMBER.matcher(buildFolder.getName()).matches() && buildFolder.isDirectory()){
+                    final File reportFolder = new File(buildFolder, GrapesPlugin.REPORT_FOLDER);
+                    indexReference(new File(reportFolder, GrapesPlugin.MODULE_REPORT_FILE));
+
+                    final File[] moduleFolders = new File(reportFolder, GrapesPlugin.MAVEN_MODULES_FOLDER).listFiles();
+                    if(moduleFolders != null){
+                        for(File moduleFolder: moduleFolders){
+                            indexReference(new File(moduleFolder, GrapesPlugin.MODULE_REPORT_FILE));
+                        }
+                    }
+                }
+            }
+        }
+
+        final File[] blobFolders = new File(getGrapesFolder(), BLOB_FOLDER).listFiles();
+        if(blobFolders != null){
+            for(File blobFolder: blobFolders){
+                final File[] blobs = blobFolder.listFiles();
+                if(blobs == null){
+                    continue;
+                }
+                for(File blob: blobs){
+                    if(!counts.containsKey(blob.getName())){
+                        blob.delete();
+                    }
+                }
+            }
+        }
+        save();
+    }
+
+    private void indexReference(final File report) {
+        if(!report.isFile()){
+            return;
+        }
+
+        try{
+            final String digest = getReferencedDigest(new FilePath(report));
+            if(digest != null){
+                references.put(getKey(report), digest);
+                increment(digest);
+            }
+        } catch (Exception e) {
+            GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Failed to read the report " + report.getPath(), e);
+        }
+    }
+
+    /**
+     * Releases the reports of the deleted builds
+     */
+    @Extension
+    public static class ReportBlobStoreRunListener extends RunListener<AbstractBuild> {
+        @Override
+        public void onDeleted(final AbstractBuild build) {
+            final ReportBlobStore store = getIfUsed();
+            if(store != null){
+                store.release(build.getRootDir());
+            }
+        }
+    }
+
+    /**
+     * Keeps the references up-to-date when projects are renamed or deleted
+     */
+    @Extension
+    public static class ReportBlobStoreItemListener extends ItemListener {
+        @Override
+        public void onRenamed(final Item item, final String oldName, final String newName) {
+            final ReportBlobStore store = getIfUsed();
+            if(store != null && item instanceof AbstractProject){
+                final File newFolder = item.getRootDir();
+                store.move(new File(newFolder.getParentFile(), oldName), newFolder);
+            }
+        }
+
+        @Override
+        public void onDeleted(final Item item) {
+            final ReportBlobStore store = getIfUsed();
+            if(store != null && item instanceof AbstractProject){
+                store.release(item.getRootDir());
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.axway.grapes.jenkins.reports;
+
+import hudson.FilePath;
+import hudson.Util;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Report Storage
+ *
+ * <p>Reads and writes the reports kept in the build folders (see {@link org.axway.grapes.jenkins.GrapesPlugin#REPORT_FOLDER}).
+ * The reports are written with the {@link Codec} selected in the global configuration.
+ * The codec of a stored report is recognized from its first bytes, so the reports written before a change
+ * of the configuration, the plain JSON ones included, remain readable.
+ * The references to the {@link ReportBlobStore} are followed.
+ * The digest of a report is always the digest of its JSON content.</p>
+ *
+ * @author jdcoffre
+ */
+public final class ReportStorage {
+
+    private static final int REFERENCE_HEADER_SIZE = 64;
+
+    private ReportStorage() {
+        // Hide utility class constructor
+    }
+
+    /**
+     * Storage format of the reports
+     */
+    public static enum Codec {
+        PLAIN {
+            @Override
+            protected boolean matches(final byte[] header, final int length) {
+                return true;
+            }
+
+            @Override
+            protected InputStream decode(final InputStream in) {
+                return in;
+            }
+
+            @Override
+            protected OutputStream encode(final OutputStream out) {
+                return out;
+            }
+        },
+        GZIP {
+            @Override
+            protected boolean matches(final byte[] header, final int length) {
+                return length >= 2 &&
+                        (header[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff) &&
+                        (header[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8);
+            }
+
+            @Override
+            protected InputStream decode(final InputStream in) throws IOException {
+                return new GZIPInputStream(in);
+            }
+
+            @Override
+            protected OutputStream encode(final OutputStream out) throws IOException {
+                return new GZIPOutputStream(out);
+            }
+        };
+
+        // Number of bytes needed to recognize a codec
+        private static final int HEADER_SIZE = 2;
+
+        protected abstract boolean matches(final byte[] header, final int length);
+
+        protected abstract InputStream decode(final InputStream in) throws IOException;
+
+        protected abstract OutputStream encode(final OutputStream out) throws IOException;
+
+        /**
+         * Returns the codec of a stored report, plain JSON is checked last because it matches anything
+         */
+        private static Codec of(final byte[] header, final int length) {
+            if(GZIP.matches(header, length)){
+                return GZIP;
+            }
+            return PLAIN;
+        }
+    }
+
+    /**
+     * Returns the codec used to write the reports
+     *
+     * @return Codec
+     */
+    public static Codec getCodec() {
+        final Jenkins jenkins = Jenkins.getInstance();
+        final GrapesNotifierDescriptor descriptor = jenkins == null ? null : jenkins.getDescriptorByType(GrapesNotifierDescriptor.class);
+        return descriptor != null && descriptor.getCompressReports() ? Codec.GZIP : Codec.PLAIN;
+    }
+
+    /**
+     * Opens a stored report, whatever its codec
+     *
+     * @param report FilePath
+     * @return InputStream the JSON content of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static InputStream read(final FilePath report) throws IOException, InterruptedException {
+        InputStream in = new BufferedInputStream(report.read());
+        try{
+            in.mark(REFERENCE_HEADER_SIZE);
+            final String digest = ReportBlobStore.readReference(in);
+            if(digest != null){
+                in.close();
+                in = new BufferedInputStream(ReportBlobStore.getBlob(digest).read());
+            }
+            else{
+                in.reset();
+            }
+            return getCodec(in).decode(in);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the file that holds the content of a stored report: the report itself or the report it references
+     *
+     * @param report FilePath
+     * @return FilePath
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static FilePath resolve(final FilePath report) throws IOException, InterruptedException {
+        final String digest = ReportBlobStore.getReferencedDigest(report);
+        return digest == null ? report : ReportBlobStore.getBlob(digest);
+    }
+
+    /**
+     * Reads a stored report, whatever its codec
+     *
+     * @param report FilePath
+     * @return String the JSON content of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static String readToString(final FilePath report) throws IOException, InterruptedException {
+        final InputStream in = read(report);
+        try{
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Opens a report for writing with the codec of the global configuration
+     *
+     * @param report FilePath
+     * @return OutputStream that expects the JSON content of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static OutputStream write(final FilePath report) throws IOException, InterruptedException {
+        final OutputStream out = report.write();
+        try{
+            return getCodec().encode(out);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a report with the codec of the global configuration
+     *
+     * @param report FilePath
+     * @param content String the JSON content of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void write(final FilePath report, final String content) throws IOException, InterruptedException {
+        final OutputStream out = write(report);
+        try{
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the digest of the JSON content of a stored report
+     *
+     * @param report FilePath
+     * @return String
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static String digest(final FilePath report) throws IOException, InterruptedException {
+        // the stored reports are named after their digest
+        final String digest = ReportBlobStore.getReferencedDigest(report);
+        if(digest != null){
+            return digest;
+        }
+        return Util.getDigestOf(read(report));
+    }
+
+    /**
+     * Checks if the content of a stored report is written as plain JSON (see {@link #resolve(FilePath)})
+     *
+     * @param content FilePath
+     * @return boolean
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static boolean isPlain(final FilePath content) throws IOException, InterruptedException {
+        final InputStream in = new BufferedInputStream(content.read());
+        try{
+            return getCodec(in) == Codec.PLAIN;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static Codec getCodec(final InputStream in) throws IOException {
+        final byte[] header = new byte[Codec.HEADER_SIZE];
+        in.mark(Codec.HEADER_SIZE);
+        int length = 0;
+        int read;
+        while(length < header.length && (read = in.read(header, length, header.length - length)) > 0){
+            length += read;
+        }
+        in.reset();
+        return Codec.of(header, length);
+    }
+}
@@ -0,0 +1,77 @@
+package org.axway.grapes.jenkins.reports;
+
+import java.io.Serializable;
+
+/**
+ * Report Summary
+ *
+ * <p>Result of the preprocessing of a Grapes report by the agent that produced it:
+ * the module header, the digest of the report and, if the master needs it, the compressed report.
+ * When the agent publishes the report itself, the summary also holds the result of the publication.</p>
+ *
+ * @author jdcoffre
+ */
+public class ReportSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ModuleHeader header;
+
+    private final String digest;
+
+    // gzip content, null if the master already holds the report
+    private final byte[] payload;
+
+    private boolean moduleDelivered = false;
+
+    private boolean buildInfoDelivered = false;
+
+    // null if the publication succeeded or was not requested
+    private String publicationError;
+
+    public ReportSummary(final ModuleHeader header, final String digest, final byte[] payload) {
+        this.header = header;
+        this.digest = digest;
+        this.payload = payload;
+    }
+
+    public ModuleHeader getHeader() {
+        return header;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public boolean hasPayload() {
+        return payload != null;
+    }
+
+    public boolean isModuleDelivered() {
+        return moduleDelivered;
+    }
+
+    public void setModuleDelivered(final boolean moduleDelivered) {
+        this.moduleDelivered = moduleDelivered;
+    }
+
+    public boolean isBuildInfoDelivered() {
+        return buildInfoDelivered;
+    }
+
+    public void setBuildInfoDelivered(final boolean buildInfoDelivered) {
+        this.buildInfoDelivered = buildInfoDelivered;
+    }
+
+    public String getPublicationError() {
+        return publicationError;
+    }
+
+    public void setPublicationError(final String publicationError) {
+        this.publicationError = publicationError;
+    }
+}
@@ -0,0 +1,330 @@
+package org.axway.grapes.jenkins.reports;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.cache.ModuleCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Report Transfer
+ *
+ * <p>Copies a Grapes report from the workspace of an agent to the master.
+ * The agent validates the report, extracts its header, computes its digest and compresses it,
+ * so the master only has to inflate the report and check its digest.
+ * Nothing is transferred if the master already holds a report with the same digest.
+ * The header and the digest are kept in the {@link ModuleCache} so the notifications do not read the report again.
+ * The agent can also post the report to Grapes server (see {@link AgentPublication}).
+ * The reports of the Maven modules of a reactor build are preprocessed in parallel by the agent in a single call.</p>
+ *
+ * @author jdcoffre
+ */
+public final class ReportTransfer {
+
+    private ReportTransfer() {
+        // Hide utility class constructor
+    }
+
+    /**
+     * Copies a report
+     *
+     * @param source FilePath the report in the workspace
+     * @param target FilePath the copy of the report
+     * @return ReportSummary the summary of the report, without payload if the target was already up-to-date
+     * @throws IOException if the report is not valid, if the transfer failed or if the copy is corrupted
+     * @throws InterruptedException
+     */
+    public static ReportSummary transfer(final FilePath source, final FilePath target) throws IOException, InterruptedException {
+        return transfer(source, target, null);
+    }
+
+    /**
+     * Copies a report, the agent posts it to Grapes server before the copy
+     *
+     * @param source FilePath the report in the workspace
+     * @param target FilePath the copy of the report
+     * @param publication AgentPublication (null if the agent should not post the report)
+     * @return ReportSummary the summary of the report, without payload if the target was already up-to-date
+     * @throws IOException if the report is not valid, if the transfer failed or if the copy is corrupted
+     * @throws InterruptedException
+     */
+    public static ReportSummary transfer(final FilePath source, final FilePath target, final AgentPublication publication) throws IOException, InterruptedException {
+        final String currentDigest = target.exists() ? ReportStorage.digest(target) : null;
+        final ReportSummary summary = source.act(new PreprocessReport(currentDigest, publication));
+        store(summary, source.getRemote(), target);
+        return summary;
+    }
+
+    /**
+     * Copies the reports of several Maven modules, the agent preprocesses them in parallel
+     *
+     * @param root FilePath the root of the Maven modules in the workspace
+     * @param targets Map<String, FilePath> the copies of the reports, per path of report relative to the root
+     * @param publication AgentPublication (null if the agent should not post the reports)
+     * @return ModuleReports the summaries of the reports that have been found, per relative path of the report
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static ModuleReports transferAll(final FilePath root, final Map<String, FilePath> targets, final AgentPublication publication) throws IOException, InterruptedException {
+        final LinkedHashMap<String, String> currentDigests = new LinkedHashMap<String, String>();
+        for(Map.Entry<String, FilePath> target: targets.entrySet()){
+            currentDigests.put(target.getKey(), target.getValue().exists() ? ReportStorage.digest(target.getValue()) : null);
+        }
+
+        final ModuleReports reports = root.act(new PreprocessModuleReports(currentDigests, publication));
+        for(Map.Entry<String, ReportSummary> report: reports.getSummaries().entrySet()){
+            try{
+                store(report.getValue(), report.getKey(), targets.get(report.getKey()));
+            } catch (IOException e) {
+                reports.failed(report.getKey(), e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Stores a report sent by an agent, in the build folder or in the {@link ReportBlobStore}
+     */
+    private static void store(final ReportSummary summary, final String sourceName, final FilePath target) throws IOException, InterruptedException {
+        if(summary.hasPayload()){
+            if(ReportBlobStore.isEnabled()){
+                final ReportBlobStore blobs = ReportBlobStore.get();
+                if(!blobs.reference(target, summary.getDigest())){
+                    final FilePath tempFile = blobs.createTempFile();
+                    write(summary, sourceName, tempFile);
+                    blobs.add(tempFile, summary.getDigest());
+                    blobs.reference(target, summary.getDigest());
+                }
+            }
+            else{
+                write(summary, sourceName, target);
+            }
+        }
+
+        ModuleCache.prime(target, summary.getHeader(), summary.getDigest());
+    }
+
+    /**
+     * Writes a report sent by an agent and checks its digest
+     */
+    private static void write(final ReportSummary summary, final String sourceName, final FilePath target) throws IOException, InterruptedException {
+        final String digest;
+        if(ReportStorage.getCodec() == ReportStorage.Codec.GZIP){
+            // The payload is already in the storage format
+            target.copyFrom(new ByteArrayInputStream(summary.getPayload()));
+            digest = Util.getDigestOf(new GZIPInputStream(new ByteArrayInputStream(summary.getPayload())));
+        }
+        else{
+            final MessageDigest md5 = getMD5();
+            final InputStream in = new GZIPInputStream(new ByteArrayInputStream(summary.getPayload()));
+            final OutputStream out = new DigestOutputStream(ReportStorage.write(target), md5);
+            try{
+                IOUtils.copy(in, out);
+                out.close();
+            } finally {
+                IOUtils.closeQuietly(in);
+                IOUtils.closeQuietly(out);
+            }
+            digest = Util.toHexString(md5.digest());
+        }
+
+        if(!digest.equals(summary.getDigest())){
+            target.delete();
+            throw new IOException("[GRAPES] Corrupted transfer of " + sourceName + ": digest mismatch.");
+        }
+    }
+
+    private static MessageDigest getMD5() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 not installed", e);
+        }
+    }
+
+    /**
+     * Preprocesses a report on the agent that produced it
+     */
+    public static class PreprocessReport implements FilePath.FileCallable<ReportSummary> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String knownDigest;
+
+        private final AgentPublication publication;
+
+        /**
+         * @param knownDigest String digest of the report held by the master (null if none)
+         * @param publication AgentPublication (null if the agent should not post the report)
+         */
+        public PreprocessReport(final String knownDigest, final AgentPublication publication) {
+            this.knownDigest = knownDigest;
+            this.publication = publication;
+        }
+
+        @Override
+        public ReportSummary invoke(final File report, final VirtualChannel channel) throws IOException, InterruptedException {
+            final byte[] content = FileUtils.readFileToByteArray(report);
+            final Module module = validate(report, content);
+            final ModuleHeader header = new ModuleHeader(module.getName(), module.getVersion());
+
+            final String digest = Util.getDigestOf(new ByteArrayInputStream(content));
+            final ReportSummary summary;
+            if(digest.equals(knownDigest)){
+                summary = new ReportSummary(header, digest, null);
+            }
+            else{
+                summary = new ReportSummary(header, digest, compress(content));
+            }
+
+            if(publication != null){
+                publication.publish(module, summary);
+            }
+            return summary;
+        }
+
+        private static byte[] compress(final byte[] content) throws IOException {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream(content.length / 4 + 64);
+            final OutputStream out = new GZIPOutputStream(payload);
+            try{
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            return payload.toByteArray();
+        }
+
+        private static Module validate(final File report, final byte[] content) throws IOException {
+            final Module module;
+            try{
+                module = JsonUtils.unserializeModule(new String(content, "UTF-8"));
+            } catch (Exception e) {
+                throw new IOException("[GRAPES] Invalid Grapes report " + report.getPath() + ": " + e.getMessage(), e);
+            }
+
+            if(module == null || module.getName() == null || module.getVersion() == null){
+                throw new IOException("[GRAPES] Invalid Grapes report " + report.getPath() + ": the module name and version are mandatory.");
+            }
+            return module;
+        }
+    }
+
+    /**
+     * Result of the preprocessing of the reports of several Maven modules
+     */
+    public static class ModuleReports implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LinkedHashMap<String, ReportSummary> summaries = new LinkedHashMap<String, ReportSummary>();
+
+        private final LinkedHashMap<String, String> errors = new LinkedHashMap<String, String>();
+
+        /**
+         * Returns the summaries of the valid reports, per relative path of the report
+         *
+         * @return Map<String, ReportSummary>
+         */
+        public Map<String, ReportSummary> getSummaries() {
+            return summaries;
+        }
+
+        /**
+         * Returns the cause of failure of the reports that could not be copied, per relative path of the report
+         *
+         * @return Map<String, String>
+         */
+        public Map<String, String> getErrors() {
+            return errors;
+        }
+
+        private void failed(final String reportPath, final String error) {
+            summaries.remove(reportPath);
+            errors.put(reportPath, error);
+        }
+    }
+
+    /**
+     * Preprocesses the reports of several Maven modules on the agent that produced them.
+     * The reports are handled in parallel, the reports that do not exist are ignored.
+     */
+    public static class PreprocessModuleReports implements FilePath.FileCallable<ModuleReports> {
+
+        private static final long serialVersionUID = 1L;
+
+        // Evaluated on the agent
+        private static final int POOL_SIZE = Integer.getInteger(ReportTransfer.class.getName() + ".poolSize", 4);
+
+        private final LinkedHashMap<String, String> knownDigests;
+
+        private final AgentPublication publication;
+
+        /**
+         * @param knownDigests LinkedHashMap<String, String> the digests of the reports held by the master
+         *                     (null value if none), per relative path of the report
+         * @param publication AgentPublication (null if the agent should not post the reports)
+         */
+        public PreprocessModuleReports(final LinkedHashMap<String, String> knownDigests, final AgentPublication publication) {
+            this.knownDigests = knownDigests;
+            this.publication = publication;
+        }
+
+        @Override
+        public ModuleReports invoke(final File root, final VirtualChannel channel) throws IOException, InterruptedException {
+            final Map<String, Future<ReportSummary>> results = new LinkedHashMap<String, Future<ReportSummary>>();
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(POOL_SIZE, knownDigests.size())),
+                    new ThreadFactoryBuilder().setNameFormat("Grapes report %d").setDaemon(true).build());
+            try{
+                for(final Map.Entry<String, String> report: knownDigests.entrySet()){
+                    final File reportFile = new File(root, report.getKey());
+                    if(!reportFile.isFile()){
+                        continue;
+                    }
+
+                    results.put(report.getKey(), executor.submit(new Callable<ReportSummary>() {
+                        @Override
+                        public ReportSummary call() throws Exception {
+                            return new PreprocessReport(report.getValue(), publication).invoke(reportFile, channel);
+                        }
+                    }));
+                }
+
+                final ModuleReports reports = new ModuleReports();
+                for(Map.Entry<String, Future<ReportSummary>> result: results.entrySet()){
+                    try{
+                        reports.getSummaries().put(result.getKey(), result.getValue().get());
+                    } catch (ExecutionException e) {
+                        reports.failed(result.getKey(), e.getCause().getMessage());
+                    }
+                }
+                return reports;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
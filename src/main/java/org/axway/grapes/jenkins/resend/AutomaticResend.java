@@ -0,0 +1,124 @@
+package org.axway.grapes.jenkins.resend;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.client.CircuitBreaker;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.NotificationHandler;
+import org.axway.grapes.jenkins.notifications.NotificationScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Automatic Resend
+ *
+ * <p>Re-sends the pending notifications in background, without waiting for an administrator.
+ * A notification is re-sent once the delay computed by the {@link RetryPolicy} after its last failure has expired.
+ * The Grapes servers known to be unavailable (see {@link CircuitBreaker}) are not contacted,
+ * and the number of notifications re-sent at each run is bounded.
+ * It stops as soon as an administrator starts a {@link ResendJob} from the management page.</p>
+ *
+ * @author jdcoffre
+ */
+@Extension
+public class AutomaticResend extends AsyncPeriodicWork {
+
+    public static final int MAX_NOTIFICATIONS_PER_RUN = Integer.getInteger(AutomaticResend.class.getName() + ".maxNotificationsPerRun", 100);
+
+    public AutomaticResend() {
+        super("Grapes automatic resend");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws InterruptedException {
+        final GrapesNotifierDescriptor descriptor = Jenkins.getInstance().getDescriptorByType(GrapesNotifierDescriptor.class);
+        if(descriptor == null || !descriptor.getAutomaticResend()){
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        int budget = MAX_NOTIFICATIONS_PER_RUN;
+
+        for(Map.Entry<String, Set<Integer>> pendingBuilds: ResendJournal.get().getPendingBuilds().entrySet()){
+            final AbstractProject<?, ?> project = Jenkins.getInstance().getItemByFullName(pendingBuilds.getKey(), AbstractProject.class);
+            if(project == null){
+                continue;
+            }
+
+            final GrapesConfig config = GrapesPlugin.getGrapesConfiguration(project);
+            if(config == null){
+                continue;
+            }
+
+            final NotificationHandler notifHandler = new NotificationHandler(config, false, descriptor.newNotificationDeadline());
+            for(Integer buildNumber: pendingBuilds.getValue()){
+                // Grapes server is unavailable or the time budget of this run is exhausted
+                if(budget <= 0 || GrapesClientRegistry.get(config).getCircuitBreaker().isOpen() || notifHandler.getDeadline().isExpired()){
+                    break;
+                }
+
+                final AbstractBuild<?, ?> build = project.getBuildByNumber(buildNumber);
+                if(build == null){
+                    continue;
+                }
+
+                // An administrator is re-sending the notifications from the management page
+                if(!ResendJob.beginAutomaticResend()){
+                    return;
+                }
+                try{
+                    budget -= resend(notifHandler, build, now);
+                } finally {
+                    ResendJob.endAutomaticResend();
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-sends the notifications of a build whose retry delay has expired
+     *
+     * @return int the number of notifications re-sent
+     */
+    private static int resend(final NotificationHandler notifHandler, final AbstractBuild<?, ?> build, final long now) throws InterruptedException {
+        final List<ResendBuildAction> dueActions = new ArrayList<ResendBuildAction>();
+        for(ResendBuildAction resendAction: ResendBuildActionFactory.getResendActions(build)){
+            if(RetryPolicy.isDue(resendAction, now)){
+                dueActions.add(resendAction);
+            }
+        }
+        if(dueActions.isEmpty()){
+            return 0;
+        }
+
+        new NotificationScheduler(notifHandler).send(build, dueActions, new NotificationScheduler.Listener() {
+            @Override
+            public void onSent(final int index, final GrapesNotification notification) {
+                GrapesPlugin.getLogger().info("[GRAPES] Pending notification of " + notification.getModuleName() + " in version " + notification.getModuleVersion() + " re-sent.");
+            }
+
+            @Override
+            public void onFailed(final int index, final GrapesNotification notification, final Exception cause) {
+                GrapesPlugin.getLogger().fine("[GRAPES] Pending notification of " + notification.getModuleName() + " in version " + notification.getModuleVersion() + " still failing: " + cause.getMessage());
+            }
+        });
+        return dueActions.size();
+    }
+}
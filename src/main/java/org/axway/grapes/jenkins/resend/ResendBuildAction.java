@@ -5,9 +5,14 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import hudson.FilePath;
 import hudson.model.Action;
 import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.GrapesNotificationDescriptor;
 import org.axway.grapes.jenkins.resend.json.ResendBuildActionDeserializer;
 import org.axway.grapes.jenkins.resend.json.ResendBuildActionSerializer;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Resend Action
  *
@@ -26,18 +31,40 @@ public class ResendBuildAction extends GrapesNotification implements Action {
     private final String moduleName;
     private final String moduleVersion;
 
+    // Kinds of notification of the same module that must be sent before this one
+    private final List<NotificationType> prerequisites;
+
+    // Number of failed attempts to send the notification
+    private int attempts = 0;
+
+    // Date before which the notification should not be automatically re-sent (0 for now)
+    private long nextAttempt = 0;
+
     public ResendBuildAction(final NotificationType notificationAction, final FilePath mimePath, final String moduleName, final String moduleVersion) {
+        this(notificationAction, mimePath, moduleName, moduleVersion, GrapesNotificationDescriptor.getDefaultPrerequisites(notificationAction));
+    }
+
+    public ResendBuildAction(final NotificationType notificationAction, final FilePath mimePath, final String moduleName, final String moduleVersion, final Collection<NotificationType> prerequisites) {
         this.notificationAction = notificationAction;
         this.mimePath = mimePath;
         this.moduleName = moduleName;
         this.moduleVersion = moduleVersion;
+        this.prerequisites = new ArrayList<NotificationType>(prerequisites);
     }
 
     public ResendBuildAction(final GrapesNotification notification) {
-        this.notificationAction = notification.getNotificationAction();
-        this.mimePath = notification.getMimePath();
-        this.moduleName = notification.getModuleName();
-        this.moduleVersion = notification.getModuleVersion();
+        this(notification, notification instanceof ResendBuildAction ?
+                ((ResendBuildAction) notification).getPrerequisites() :
+                GrapesNotificationDescriptor.getDefaultPrerequisites(notification.getNotificationAction()));
+
+        if(notification instanceof ResendBuildAction){
+            attempts = ((ResendBuildAction) notification).getAttempts();
+            nextAttempt = ((ResendBuildAction) notification).getNextAttempt();
+        }
+    }
+
+    public ResendBuildAction(final GrapesNotification notification, final Collection<NotificationType> prerequisites) {
+        this(notification.getNotificationAction(), notification.getMimePath(), notification.getModuleName(), notification.getModuleVersion(), prerequisites);
     }
 
     @Override
@@ -65,6 +92,26 @@ public class ResendBuildAction extends GrapesNotification implements Action {
         return moduleVersion;
     }
 
+    public List<NotificationType> getPrerequisites() {
+        return prerequisites;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(final int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(final long nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
     // Hide the build action
     public String getIconFileName() {
         return null;
@@ -0,0 +1,309 @@
+package org.axway.grapes.jenkins.resend;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.model.AbstractBuild;
+import net.sf.json.JSONObject;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.client.GrapesClientRegistry;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.NotificationHandler;
+import org.axway.grapes.jenkins.notifications.NotificationScheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Resend Job
+ *
+ * <p>Re-sends pending notifications in background.
+ * The notifications of a build are sent by a {@link NotificationScheduler}, as the {@link AutomaticResend} does:
+ * a notification waits only for its prerequisites. The builds are sent in parallel on a bounded pool.
+ * The number of builds sent at the same time to a Grapes server is bounded by the maximum number of connections of the server.</p>
+ * <p>A job can be cancelled: the notifications it did not send yet remain pending and will be sent by the next job.</p>
+ * <p>While a job is running, the {@link AutomaticResend} does not start re-sending other builds,
+ * and the job waits for the builds it is already re-sending before sending its own.</p>
+ *
+ * @author jdcoffre
+ */
+public class ResendJob {
+
+    public static final int POOL_SIZE = Integer.getInteger(ResendJob.class.getName() + ".poolSize", 4);
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(POOL_SIZE,
+            new ThreadFactoryBuilder().setNameFormat("Grapes resend %d").setDaemon(true).build());
+
+    public static enum State {RUNNING, CANCELLED, COMPLETED}
+
+    // Guards the hand-over between the jobs and the automatic re-send
+    private static final Object LOCK = new Object();
+
+    // Guarded by LOCK: the last started job, the number of builds being re-sent automatically
+    private static ResendJob current;
+    private static int automaticBuilds = 0;
+
+    // server name -> builds to re-send to this server
+    private final Map<String, Queue<BuildTask>> lanes = new LinkedHashMap<String, Queue<BuildTask>>();
+
+    // server name -> maximum number of builds re-sent at the same time to this server
+    private final Map<String, Integer> laneLimits = new LinkedHashMap<String, Integer>();
+
+    private final int total;
+
+    private final AtomicInteger done = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // Number of lanes still working
+    private final AtomicInteger activeLanes = new AtomicInteger();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long endTime = 0;
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param resendActions List<ResendProjectAction> the pending notifications to re-send
+     */
+    public ResendJob(final List<ResendProjectAction> resendActions) {
+        for(ResendProjectAction resendProjectAction: resendActions){
+            final GrapesConfig config = resendProjectAction.getConfig();
+            Queue<BuildTask> lane = lanes.get(config.getName());
+            if(lane == null){
+                lane = new ConcurrentLinkedQueue<BuildTask>();
+                lanes.put(config.getName(), lane);
+                laneLimits.put(config.getName(), Math.min(GrapesClientRegistry.get(config).getMaxConnections(), POOL_SIZE));
+            }
+
+            final NotificationHandler notifHandler = new NotificationHandler(config, true);
+            for(Map.Entry<AbstractBuild<?,?>, List<ResendBuildAction>> resendBuildAction: resendProjectAction.getResendActionPerBuild().entrySet()){
+                lane.add(new BuildTask(notifHandler, resendBuildAction.getKey(), resendBuildAction.getValue()));
+            }
+        }
+        total = countNotifications();
+    }
+
+    /**
+     * @param lanes Map<String, Queue<BuildTask>> the builds to re-send per server name
+     * @param laneLimits Map<String, Integer> the maximum number of builds re-sent at the same time per server name
+     */
+    ResendJob(final Map<String, Queue<BuildTask>> lanes, final Map<String, Integer> laneLimits) {
+        this.lanes.putAll(lanes);
+        this.laneLimits.putAll(laneLimits);
+        total = countNotifications();
+    }
+
+    private int countNotifications() {
+        int notifications = 0;
+        for(Queue<BuildTask> lane: lanes.values()){
+            for(BuildTask task: lane){
+                notifications += task.resendActions.size();
+            }
+        }
+        return notifications;
+    }
+
+    /**
+     * Starts a job, each server lane runs as many workers as the server accepts connections
+     *
+     * @param resendActions List<ResendProjectAction>
+     * @return ResendJob
+     */
+    public static ResendJob start(final List<ResendProjectAction> resendActions) {
+        return new ResendJob(resendActions).start();
+    }
+
+    /**
+     * Starts the job
+     *
+     * @return ResendJob this job
+     */
+    ResendJob start() {
+        synchronized (LOCK) {
+            current = this;
+        }
+
+        final List<Runnable> laneWorkers = new ArrayList<Runnable>();
+        for(Map.Entry<String, Queue<BuildTask>> lane: lanes.entrySet()){
+            final int laneSize = Math.min(laneLimits.get(lane.getKey()), lane.getValue().size());
+            for(int i = 0; i < laneSize; i++){
+                laneWorkers.add(new LaneWorker(lane.getValue()));
+            }
+        }
+
+        if(laneWorkers.isEmpty()){
+            endTime = System.currentTimeMillis();
+            return this;
+        }
+
+        activeLanes.set(laneWorkers.size());
+        for(Runnable laneWorker: laneWorkers){
+            EXECUTOR.submit(laneWorker);
+        }
+        return this;
+    }
+
+    /**
+     * Registers the automatic re-send of a build, unless a job is running
+     *
+     * @return boolean false if a job is running, the build must not be re-sent
+     */
+    static boolean beginAutomaticResend() {
+        synchronized (LOCK) {
+            if(current != null && current.isRunning()){
+                return false;
+            }
+            automaticBuilds++;
+            return true;
+        }
+    }
+
+    /**
+     * Ends the automatic re-send of a build registered by {@link #beginAutomaticResend()}
+     */
+    static void endAutomaticResend() {
+        synchronized (LOCK) {
+            automaticBuilds--;
+            LOCK.notifyAll();
+        }
+    }
+
+    private static void awaitAutomaticResend() throws InterruptedException {
+        synchronized (LOCK) {
+            while(automaticBuilds > 0){
+                LOCK.wait();
+            }
+        }
+    }
+
+    /**
+     * Stops the job after the builds in progress, the other notifications remain pending
+     */
+    public void cancel() {
+        if(isRunning()){
+            cancelled = true;
+        }
+    }
+
+    public State getState() {
+        if(endTime == 0){
+            return State.RUNNING;
+        }
+        return cancelled ? State.CANCELLED : State.COMPLETED;
+    }
+
+    public boolean isRunning() {
+        return getState() == State.RUNNING;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getDone() {
+        return done.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getRemaining() {
+        return total - done.get() - failed.get();
+    }
+
+    /**
+     * Returns the number of notifications handled per second since the start of the job
+     *
+     * @return double
+     */
+    public double getThroughput() {
+        final long end = endTime == 0 ? System.currentTimeMillis() : endTime;
+        final long elapsed = Math.max(1, end - startTime);
+        return (done.get() + failed.get()) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Returns the progression of the job
+     *
+     * @return JSONObject
+     */
+    public JSONObject toJSON() {
+        final JSONObject progress = new JSONObject();
+        progress.put("state", getState().name());
+        progress.put("total", getTotal());
+        progress.put("done", getDone());
+        progress.put("failed", getFailed());
+        progress.put("remaining", getRemaining());
+        progress.put("throughput", Math.round(getThroughput() * 100) / 100.0);
+        return progress;
+    }
+
+    /**
+     * Notifications of a build to re-send
+     */
+    static class BuildTask {
+        private final NotificationHandler notifHandler;
+        private final AbstractBuild<?, ?> build;
+        private final List<ResendBuildAction> resendActions;
+
+        BuildTask(final NotificationHandler notifHandler, final AbstractBuild<?, ?> build, final List<ResendBuildAction> resendActions) {
+            this.notifHandler = notifHandler;
+            this.build = build;
+            this.resendActions = resendActions;
+        }
+    }
+
+    /**
+     * Sends the builds of a server lane one after the other
+     */
+    private class LaneWorker implements Runnable {
+        private final Queue<BuildTask> lane;
+
+        private LaneWorker(final Queue<BuildTask> lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void run() {
+            try{
+                awaitAutomaticResend();
+                BuildTask task;
+                while(!cancelled && (task = lane.poll()) != null){
+                    send(task);
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+            } finally {
+                if(activeLanes.decrementAndGet() == 0){
+                    endTime = System.currentTimeMillis();
+                }
+            }
+        }
+
+        private void send(final BuildTask task) throws InterruptedException {
+            // The notifications that depend on a failed one are postponed, they are counted as failed
+            new NotificationScheduler(task.notifHandler).send(task.build, task.resendActions, new NotificationScheduler.Listener() {
+                @Override
+                public void onSent(final int index, final GrapesNotification notification) {
+                    done.incrementAndGet();
+                }
+
+                @Override
+                public void onFailed(final int index, final GrapesNotification notification, final Exception cause) {
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to re-send notification: ", cause);
+                    failed.incrementAndGet();
+                }
+            });
+        }
+    }
+}
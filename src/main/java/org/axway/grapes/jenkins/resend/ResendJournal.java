@@ -0,0 +1,705 @@
+package org.axway.grapes.jenkins.resend;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.notifications.NotificationHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Resend Journal
+ *
+ * <p>Stores the pending notifications of all the projects in a single append-only file of JENKINS_HOME.
+ * Each change is a record appended at the end of the journal: a notification is enqueued when it fails,
+ * acknowledged when it is delivered and discarded with its build or its project.
+ * The journal is replayed in memory at startup, the resend actions are then read without any file access.</p>
+ *
+ * <p>The records appended concurrently are synchronized to the disk together.
+ * Once most of the records are obsolete, the journal is compacted in background:
+ * it is rewritten with only the pending notifications.</p>
+ * <p>A record that cannot be written is not applied in memory and the failure is reported to the caller.
+ * A record truncated by a crash is removed before new records are appended.</p>
+ *
+ * <p>The notifications serialized in the build folders by older versions are moved into the journal at first load.</p>
+ *
+ * @author jdcoffre
+ */
+public final class ResendJournal {
+
+    public static final String JOURNAL_FILE = "resend-journal";
+
+    public static final int COMPACTION_THRESHOLD = Integer.getInteger(ResendJournal.class.getName() + ".compactionThreshold", 1000);
+
+    // Index of the pending notifications used by older versions, replaced by the journal
+    private static final String LEGACY_INDEX_FILE = "resend-index";
+
+    private static final String SEPARATOR = "|";
+
+    // Record types
+    private static final String ENQUEUE = "E";
+    private static final String ACK = "A";
+    private static final String DISCARD = "D";
+    private static final String RENAME = "R";
+
+    private static final Pattern BUILD_NUMBER = Pattern.compile("\\d+");
+
+    // Configured once, the mapper is thread-safe
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static {
+        MAPPER.disable(MapperFeature.USE_GETTERS_AS_SETTERS);
+    }
+
+    private static ResendJournal instance;
+
+    // project full name -> notification id -> pending notification
+    private final Map<String, Map<String, Pending>> entries = new HashMap<String, Map<String, Pending>>();
+
+    private final File file;
+
+    private FileOutputStream stream;
+    private Writer writer;
+
+    // Number of records of the journal file, obsolete ones included
+    private int records = 0;
+
+    // Sequence numbers of the last appended record and of the last record synchronized to the disk
+    private long appended = 0;
+    private long synced = 0;
+    private final Object syncLock = new Object();
+
+    ResendJournal(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the journal, replays or creates it at first call
+     *
+     * @return ResendJournal
+     */
+    public static synchronized ResendJournal get() {
+        if(instance == null){
+            final File grapesFolder = new File(Jenkins.getInstance().getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER);
+            final ResendJournal journal = new ResendJournal(new File(grapesFolder, JOURNAL_FILE));
+            if(journal.file.exists()){
+                journal.open();
+            }
+            else{
+                journal.migrate(grapesFolder);
+            }
+            instance = journal;
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the journal once the projects are loaded, the legacy resend files can then be found
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        get();
+    }
+
+    /**
+     * Records a pending notification of a build.
+     * The same notification of the other builds of the project is replaced.
+     *
+     * @param build AbstractBuild<?, ?>
+     * @param notificationId String
+     * @param resendAction ResendBuildAction
+     * @throws IOException if the notification could not be recorded
+     */
+    public void enqueue(final AbstractBuild<?, ?> build, final String notificationId, final ResendBuildAction resendAction) throws IOException {
+        enqueue(build.getProject().getFullName(), build.getNumber(), notificationId, resendAction);
+    }
+
+    void enqueue(final String projectName, final int buildNumber, final String notificationId, final ResendBuildAction resendAction) throws IOException {
+        final String serializedAction = MAPPER.writeValueAsString(resendAction);
+        final long sequence;
+        synchronized (this){
+            sequence = append(ENQUEUE, String.valueOf(buildNumber), notificationId, projectName, serializedAction);
+            put(projectName, notificationId, buildNumber, resendAction);
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Records that a notification of a project has been delivered
+     *
+     * @param projectName String
+     * @param notificationId String
+     * @throws IOException if the acknowledgement could not be recorded, the notification is still pending
+     */
+    public void ack(final String projectName, final String notificationId) throws IOException {
+        final long sequence;
+        synchronized (this){
+            final Map<String, Pending> projectEntries = entries.get(projectName);
+            if(projectEntries == null || !projectEntries.containsKey(notificationId)){
+                return;
+            }
+            sequence = append(ACK, notificationId, projectName);
+            remove(projectName, notificationId);
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Returns the pending notifications of a build (never null)
+     *
+     * @param projectName String
+     * @param buildNumber int
+     * @return List<ResendBuildAction>
+     */
+    public synchronized List<ResendBuildAction> getResendActions(final String projectName, final int buildNumber) {
+        final Map<String, Pending> projectEntries = entries.get(projectName);
+        if(projectEntries == null){
+            return Collections.emptyList();
+        }
+
+        final List<ResendBuildAction> resendActions = new ArrayList<ResendBuildAction>();
+        for(Pending pending: projectEntries.values()){
+            if(pending.buildNumber == buildNumber){
+                resendActions.add(pending.resendAction);
+            }
+        }
+        return Collections.unmodifiableList(resendActions);
+    }
+
+    /**
+     * Returns the numbers of the builds that hold pending notifications, per project full name (never null)
+     *
+     * @return Map<String, Set<Integer>>
+     */
+    public synchronized Map<String, Set<Integer>> getPendingBuilds() {
+        final Map<String, Set<Integer>> pendingBuilds = new TreeMap<String, Set<Integer>>();
+        for(Map.Entry<String, Map<String, Pending>> project: entries.entrySet()){
+            final Set<Integer> builds = new TreeSet<Integer>();
+            for(Pending pending: project.getValue().values()){
+                builds.add(pending.buildNumber);
+            }
+            pendingBuilds.put(project.getKey(), builds);
+        }
+        return pendingBuilds;
+    }
+
+    /**
+     * Returns the number of pending notifications
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        int size = 0;
+        for(Map<String, Pending> projectEntries: entries.values()){
+            size += projectEntries.size();
+        }
+        return size;
+    }
+
+    /**
+     * Rewrites the journal with only the pending notifications if most of its records are obsolete
+     */
+    public void compactIfNeeded() {
+        synchronized (syncLock){
+            synchronized (this){
+                if(records > COMPACTION_THRESHOLD && records > 2 * size()){
+                    compact();
+                }
+            }
+        }
+    }
+
+    void discardBuild(final String projectName, final int buildNumber) throws IOException {
+        final long sequence;
+        synchronized (this){
+            final Map<String, Pending> projectEntries = entries.get(projectName);
+            if(projectEntries == null || !hasBuild(projectEntries, buildNumber)){
+                return;
+            }
+
+            sequence = append(DISCARD, String.valueOf(buildNumber), projectName);
+            removeBuild(projectName, projectEntries, buildNumber);
+        }
+        sync(sequence);
+    }
+
+    private void discardProject(final String projectName) throws IOException {
+        final long sequence;
+        synchronized (this){
+            if(!entries.containsKey(projectName)){
+                return;
+            }
+            sequence = append(DISCARD, "", projectName);
+            entries.remove(projectName);
+        }
+        sync(sequence);
+    }
+
+    private void renameProject(final String oldName, final String newName) throws IOException {
+        final long sequence;
+        synchronized (this){
+            if(!entries.containsKey(oldName)){
+                return;
+            }
+            sequence = append(RENAME, oldName, newName);
+            entries.put(newName, entries.remove(oldName));
+        }
+        sync(sequence);
+    }
+
+    private static boolean hasBuild(final Map<String, Pending> projectEntries, final int buildNumber) {
+        for(Pending pending: projectEntries.values()){
+            if(pending.buildNumber == buildNumber){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeBuild(final String projectName, final Map<String, Pending> projectEntries, final int buildNumber) {
+        final Iterator<Pending> iterator = projectEntries.values().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().buildNumber == buildNumber){
+                iterator.remove();
+            }
+        }
+        if(projectEntries.isEmpty()){
+            entries.remove(projectName);
+        }
+    }
+
+    private void put(final String projectName, final String notificationId, final int buildNumber, final ResendBuildAction resendAction) {
+        Map<String, Pending> projectEntries = entries.get(projectName);
+        if(projectEntries == null){
+            projectEntries = new TreeMap<String, Pending>();
+            entries.put(projectName, projectEntries);
+        }
+        projectEntries.put(notificationId, new Pending(buildNumber, resendAction));
+    }
+
+    private Pending remove(final String projectName, final String notificationId) {
+        final Map<String, Pending> projectEntries = entries.get(projectName);
+        if(projectEntries == null){
+            return null;
+        }
+
+        final Pending pending = projectEntries.remove(notificationId);
+        if(projectEntries.isEmpty()){
+            entries.remove(projectName);
+        }
+        return pending;
+    }
+
+    /**
+     * Appends a record to the journal, the caller must then synchronize it to the disk.
+     * The caller applies the record in memory only if it has been appended.
+     *
+     * @param fields String... the record type followed by its fields
+     * @return long the sequence number of the record
+     * @throws IOException
+     */
+    private long append(final String... fields) throws IOException {
+        final StringBuilder record = new StringBuilder();
+        for(int i = 0; i < fields.length; i++){
+            if(i > 0){
+                record.append(SEPARATOR);
+            }
+            record.append(fields[i]);
+        }
+        record.append('\n');
+
+        try{
+            if(writer == null){
+                openWriter();
+            }
+            writer.write(record.toString());
+        } catch (IOException e){
+            // The record may be partially written, it is truncated when the journal is reopened
+            closeWriter();
+            throw new IOException("[GRAPES] Failed to append a record to the resend journal.", e);
+        }
+        records++;
+        return ++appended;
+    }
+
+    /**
+     * Synchronizes the journal to the disk up to a record.
+     * The records appended by other threads in the meantime are synchronized at the same time.
+     * If the synchronization fails, the journal is rewritten from the memory so that no record is lost.
+     *
+     * @param sequence long
+     * @throws IOException if the record could not be written to the disk
+     */
+    private void sync(final long sequence) throws IOException {
+        synchronized (syncLock){
+            if(synced >= sequence){
+                return;
+            }
+
+            long target = sequence;
+            final FileOutputStream out;
+            try{
+                synchronized (this){
+                    target = appended;
+                    out = stream;
+                    if(writer == null){
+                        throw new IOException("The resend journal has been closed before it was synchronized");
+                    }
+                    writer.flush();
+                }
+
+                // Records can be appended while the file is synchronized, they will be part of the next batch
+                out.getFD().sync();
+                synced = target;
+            } catch (IOException e){
+                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to synchronize the resend journal, rewriting it.", e);
+                synchronized (this){
+                    closeWriter();
+                    if(!compact()){
+                        throw new IOException("[GRAPES] Failed to write the resend journal, the last changes of the pending notifications will be lost at restart.", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the journal: the last valid state is restored, a record truncated by a crash is removed
+     */
+    void open() {
+        BufferedReader reader = null;
+        try{
+            truncateTail();
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null){
+                records++;
+                try{
+                    replay(line);
+                } catch (Exception e){
+                    GrapesPlugin.getLogger().log(Level.WARNING, "[GRAPES] Ignoring an invalid record of the resend journal: " + line, e);
+                }
+            }
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to read the resend journal.", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    private void replay(final String line) throws IOException {
+        final String[] fields = line.split("\\" + SEPARATOR, 5);
+        if(ENQUEUE.equals(fields[0]) && fields.length == 5){
+            // E|<build number>|<notification id>|<project full name>|<resend action>
+            put(fields[3], fields[2], Integer.parseInt(fields[1]), MAPPER.readValue(fields[4], ResendBuildAction.class));
+        }
+        else if(ACK.equals(fields[0]) && fields.length == 3){
+            // A|<notification id>|<project full name>
+            remove(fields[2], fields[1]);
+        }
+        else if(DISCARD.equals(fields[0]) && fields.length == 3){
+            // D|<build number, empty for all the builds>|<project full name>
+            if(fields[1].isEmpty()){
+                entries.remove(fields[2]);
+            }
+            else{
+                final Map<String, Pending> projectEntries = entries.get(fields[2]);
+                if(projectEntries != null){
+                    final int buildNumber = Integer.parseInt(fields[1]);
+                    final Iterator<Pending> iterator = projectEntries.values().iterator();
+                    while(iterator.hasNext()){
+                        if(iterator.next().buildNumber == buildNumber){
+                            iterator.remove();
+                        }
+                    }
+                    if(projectEntries.isEmpty()){
+                        entries.remove(fields[2]);
+                    }
+                }
+            }
+        }
+        else if(RENAME.equals(fields[0]) && fields.length == 3){
+            // R|<old project full name>|<new project full name>
+            final Map<String, Pending> projectEntries = entries.remove(fields[1]);
+            if(projectEntries != null){
+                entries.put(fields[2], projectEntries);
+            }
+        }
+        else{
+            throw new IOException("Unknown record");
+        }
+    }
+
+    /**
+     * Removes the end of the last record if it has been truncated by a crash,
+     * so that the next record is not appended to it
+     *
+     * @throws IOException
+     */
+    private void truncateTail() throws IOException {
+        final RandomAccessFile journal = new RandomAccessFile(file, "rw");
+        try{
+            final long length = journal.length();
+            final byte[] buffer = new byte[4096];
+            long end = length;
+            search:
+            while(end > 0){
+                final int size = (int) Math.min(buffer.length, end);
+                journal.seek(end - size);
+                journal.readFully(buffer, 0, size);
+                for(int i = size - 1; i >= 0; i--){
+                    if(buffer[i] == '\n'){
+                        end = end - size + i + 1;
+                        break search;
+                    }
+                }
+                end -= size;
+            }
+
+            if(end < length){
+                GrapesPlugin.getLogger().warning("[GRAPES] Removing a truncated record at the end of the resend journal.");
+                journal.setLength(end);
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Rewrites the journal with an enqueue record per pending notification.
+     * The new journal is synchronized to the disk before it replaces the current one.
+     *
+     * @return boolean true if the journal has been rewritten
+     */
+    boolean compact() {
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try{
+            file.getParentFile().mkdirs();
+            out = new FileOutputStream(tmpFile);
+            final Writer tmpWriter = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            int compactedRecords = 0;
+            for(Map.Entry<String, Map<String, Pending>> project: entries.entrySet()){
+                for(Map.Entry<String, Pending> notification: project.getValue().entrySet()){
+                    tmpWriter.write(ENQUEUE + SEPARATOR + notification.getValue().buildNumber + SEPARATOR + notification.getKey() + SEPARATOR +
+                            project.getKey() + SEPARATOR + MAPPER.writeValueAsString(notification.getValue().resendAction) + "\n");
+                    compactedRecords++;
+                }
+            }
+            tmpWriter.flush();
+            out.getFD().sync();
+            out.close();
+
+            closeWriter();
+            if(!tmpFile.renameTo(file)){
+                // Windows does not replace an existing file on rename
+                if(!file.delete() || !tmpFile.renameTo(file)){
+                    throw new IOException("Failed to replace " + file.getPath());
+                }
+            }
+            records = compactedRecords;
+            synced = appended;
+            return true;
+        } catch (IOException e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to compact the resend journal.", e);
+            tmpFile.delete();
+            return false;
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Creates the journal from the resend files stored in the build folders by older versions, then removes them
+     *
+     * @param grapesFolder File
+     */
+    private void migrate(final File grapesFolder) {
+        final List<File> legacyFiles = new ArrayList<File>();
+        for(AbstractProject<?, ?> project: Jenkins.getInstance().getAllItems(AbstractProject.class)){
+            final File[] buildFolders = project.getBuildDir().listFiles();
+            if(buildFolders == null){
+                continue;
+            }
+
+            // Build folders are reachable through their number, no need to load the builds
+            for(File buildFolder: buildFolders){
+                if(!BUILD_NUMBER.matcher(buildFolder.getName()).matches() || !buildFolder.isDirectory()){
+                    continue;
+                }
+
+                final File[] reports = new File(buildFolder, GrapesPlugin.REPORT_FOLDER).listFiles();
+                if(reports == null){
+                    continue;
+                }
+                for(File report: reports){
+                    if(report.getName().endsWith(NotificationHandler.TO_RESEND_SUFFIX)){
+                        legacyFiles.add(report);
+                        migrate(project.getFullName(), Integer.parseInt(buildFolder.getName()), report);
+                    }
+                }
+            }
+        }
+
+        compact();
+        if(!file.exists()){
+            // Keep the legacy files, the migration will be tried again at next startup
+            return;
+        }
+
+        for(File legacyFile: legacyFiles){
+            legacyFile.delete();
+        }
+        new File(grapesFolder, LEGACY_INDEX_FILE).delete();
+
+        if(!legacyFiles.isEmpty()){
+            GrapesPlugin.getLogger().info("[GRAPES] " + legacyFiles.size() + " pending notification(s) moved into the resend journal.");
+        }
+    }
+
+    private void migrate(final String projectName, final int buildNumber, final File legacyFile) {
+        try{
+            final ResendBuildAction resendAction = MAPPER.readValue(legacyFile, ResendBuildAction.class);
+
+            // Keep the notification of the most recent build if it is pending in several builds
+            final Map<String, Pending> projectEntries = entries.get(projectName);
+            final Pending pending = projectEntries == null ? null : projectEntries.get(legacyFile.getName());
+            if(pending == null || pending.buildNumber < buildNumber){
+                put(projectName, legacyFile.getName(), buildNumber, resendAction);
+            }
+        }catch (Exception e){
+            GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to migrate the resend action " + legacyFile.getPath(), e);
+        }
+    }
+
+    private void openWriter() throws IOException {
+        file.getParentFile().mkdirs();
+        if(file.exists()){
+            truncateTail();
+        }
+        stream = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+    }
+
+    private void closeWriter() {
+        IOUtils.closeQuietly(writer);
+        writer = null;
+        stream = null;
+    }
+
+    /**
+     * Closes the journal file
+     */
+    synchronized void close() {
+        closeWriter();
+    }
+
+    private static class Pending {
+        private final int buildNumber;
+        private final ResendBuildAction resendAction;
+
+        private Pending(final int buildNumber, final ResendBuildAction resendAction) {
+            this.buildNumber = buildNumber;
+            this.resendAction = resendAction;
+        }
+    }
+
+    /**
+     * Compacts the journal in background
+     */
+    @Extension
+    public static class Compaction extends AsyncPeriodicWork {
+
+        public Compaction() {
+            super("Grapes resend journal compaction");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(10);
+        }
+
+        @Override
+        protected void execute(final TaskListener listener) {
+            get().compactIfNeeded();
+        }
+    }
+
+    /**
+     * Discards the pending notifications of the deleted builds
+     */
+    @Extension
+    public static class ResendJournalRunListener extends RunListener<AbstractBuild> {
+        @Override
+        public void onDeleted(final AbstractBuild build) {
+            try{
+                get().discardBuild(build.getParent().getFullName(), build.getNumber());
+            } catch (IOException e){
+                GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to discard the pending notifications of " + build.getFullDisplayName(), e);
+            }
+        }
+    }
+
+    /**
+     * Keeps the journal up-to-date when projects are renamed or deleted
+     */
+    @Extension
+    public static class ResendJournalItemListener extends ItemListener {
+        @Override
+        public void onRenamed(final Item item, final String oldName, final String newName) {
+            if(item instanceof AbstractProject){
+                final ItemGroup<?> parent = item.getParent();
+                final String parentName = parent instanceof Jenkins ? "" : parent.getFullName() + "/";
+                try{
+                    get().renameProject(parentName + oldName, parentName + newName);
+                } catch (IOException e){
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to move the pending notifications of " + oldName + " to " + newName, e);
+                }
+            }
+        }
+
+        @Override
+        public void onDeleted(final Item item) {
+            if(item instanceof AbstractProject){
+                try{
+                    get().discardProject(item.getFullName());
+                } catch (IOException e){
+                    GrapesPlugin.getLogger().log(Level.SEVERE, "[GRAPES] Failed to discard the pending notifications of " + item.getFullName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.axway.grapes.jenkins.resend;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry Policy
+ *
+ * <p>Computes when a failed notification should be automatically re-sent.
+ * The delay doubles at each failed attempt up to a maximum, and a random part of it is removed
+ * so that the notifications that failed together are not re-sent all at once.</p>
+ *
+ * @author jdcoffre
+ */
+public final class RetryPolicy {
+
+    public static final long BASE_DELAY = TimeUnit.MINUTES.toMillis(Integer.getInteger(RetryPolicy.class.getName() + ".baseDelay", 1));
+
+    public static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(Integer.getInteger(RetryPolicy.class.getName() + ".maxDelay", 360));
+
+    private static final Random RANDOM = new Random();
+
+    private RetryPolicy() {
+        // Hide utility class constructor
+    }
+
+    /**
+     * Returns the delay before the next attempt, between half and all of the exponential delay
+     *
+     * @param attempts int number of failed attempts, at least 1
+     * @return long delay in milliseconds
+     */
+    public static long getDelay(final int attempts) {
+        return getDelay(attempts, RANDOM.nextDouble());
+    }
+
+    static long getDelay(final int attempts, final double jitter) {
+        // 2^30 minutes is far beyond any maximum delay
+        final int exponent = Math.min(Math.max(attempts, 1) - 1, 30);
+        final long delay = Math.min(MAX_DELAY, BASE_DELAY << exponent);
+        return delay / 2 + (long) (delay / 2 * jitter);
+    }
+
+    /**
+     * Records a failed attempt to send a notification and schedules the next one
+     *
+     * @param resendAction ResendBuildAction
+     */
+    public static void failed(final ResendBuildAction resendAction) {
+        resendAction.setAttempts(resendAction.getAttempts() + 1);
+        resendAction.setNextAttempt(System.currentTimeMillis() + getDelay(resendAction.getAttempts()));
+    }
+
+    /**
+     * Checks if a notification can be automatically re-sent
+     *
+     * @param resendAction ResendBuildAction
+     * @param now long
+     * @return boolean
+     */
+    public static boolean isDue(final ResendBuildAction resendAction, final long now) {
+        return resendAction.getNextAttempt() <= now;
+    }
+}
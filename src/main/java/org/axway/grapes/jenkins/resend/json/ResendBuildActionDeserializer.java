@@ -7,11 +7,15 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
 import hudson.FilePath;
-import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.axway.grapes.jenkins.notifications.GrapesNotificationDescriptor;
 import org.axway.grapes.jenkins.resend.ResendBuildAction;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Resend Build Action Deserializer
@@ -35,11 +39,28 @@ public class ResendBuildActionDeserializer extends JsonDeserializer<ResendBuildA
         final String moduleName = node.get("moduleName").asText();
         final String moduleVersion = node.get("moduleVersion").asText();
 
-        if(mimePath == null){
-            return new ResendBuildAction(GrapesNotification.NotificationType.valueOf(notificationAction),mimePath , moduleName, moduleVersion);
+        final NotificationType notificationType = NotificationType.valueOf(notificationAction);
+
+        // Resend actions serialized by older versions do not hold their prerequisites
+        Collection<NotificationType> prerequisites = GrapesNotificationDescriptor.getDefaultPrerequisites(notificationType);
+        if(node.get("prerequisites") != null){
+            final List<NotificationType> serializedPrerequisites = new ArrayList<NotificationType>();
+            for(JsonNode prerequisite: node.get("prerequisites")){
+                serializedPrerequisites.add(NotificationType.valueOf(prerequisite.asText()));
+            }
+            prerequisites = serializedPrerequisites;
         }
 
-        return new ResendBuildAction(GrapesNotification.NotificationType.valueOf(notificationAction),mimePath, moduleName, moduleVersion);
+        final ResendBuildAction resendBuildAction = new ResendBuildAction(notificationType, mimePath, moduleName, moduleVersion, prerequisites);
+
+        // Retry information is missing from resend actions serialized by older versions
+        if(node.get("attempts") != null){
+            resendBuildAction.setAttempts(node.get("attempts").asInt());
+        }
+        if(node.get("nextAttempt") != null){
+            resendBuildAction.setNextAttempt(node.get("nextAttempt").asLong());
+        }
+        return resendBuildAction;
 
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
 import org.axway.grapes.jenkins.resend.ResendBuildAction;
 
 import java.io.IOException;
@@ -30,6 +31,16 @@ public class ResendBuildActionSerializer extends JsonSerializer<ResendBuildActio
 
             jsonGenerator.writeStringField("moduleName", resendBuildAction.getModuleName());
             jsonGenerator.writeStringField("moduleVersion", resendBuildAction.getModuleVersion());
+
+            jsonGenerator.writeArrayFieldStart("prerequisites");
+            for(GrapesNotification.NotificationType prerequisite: resendBuildAction.getPrerequisites()){
+                jsonGenerator.writeString(prerequisite.name());
+            }
+            jsonGenerator.writeEndArray();
+
+            jsonGenerator.writeNumberField("attempts", resendBuildAction.getAttempts());
+            jsonGenerator.writeNumberField("nextAttempt", resendBuildAction.getNextAttempt());
+
             jsonGenerator.writeEndObject();
             jsonGenerator.flush();
 
@@ -0,0 +1,54 @@
+package org.axway.grapes.jenkins;
+
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+import org.axway.grapes.jenkins.resend.ResendJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class AdministrateResendActionTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void onlyTheBuildsOfTheJournalAreListed() throws Exception {
+        final GrapesConfig config = new GrapesConfig("grapes-server", "localhost", 8080, 1000, 1000, 2, false, null);
+        jenkins.jenkins.getDescriptorByType(GrapesNotifierDescriptor.class).setServers(Collections.singletonList(config));
+
+        final MavenModuleSet project = jenkins.createMavenProject("project");
+        project.getPublishersList().add(new GrapesNotifier("grapes-server", true, false));
+        final List<MavenModuleSetBuild> builds = new ArrayList<MavenModuleSetBuild>();
+        for(int i = 0 ; i < 4 ; i++){
+            builds.add(project.createExecutable());
+        }
+
+        final ResendJournal journal = ResendJournal.get();
+        journal.enqueue(builds.get(0), ".module1-1.0-POST_MODULE-to-resend", new ResendBuildAction(NotificationType.POST_MODULE, null, "module1", "1.0"));
+        journal.enqueue(builds.get(1), ".module2-2.0-POST_MODULE-to-resend", new ResendBuildAction(NotificationType.POST_MODULE, null, "module2", "2.0"));
+        journal.enqueue(builds.get(3), ".module4-4.0-PROMOTE-to-resend", new ResendBuildAction(NotificationType.PROMOTE, null, "module4", "4.0"));
+        // Delivered since
+        journal.ack("project", ".module2-2.0-POST_MODULE-to-resend");
+
+        // A project without pending notification
+        jenkins.createMavenProject("other").getPublishersList().add(new GrapesNotifier("grapes-server", true, false));
+
+        final Map<String, String> modules = new AdministrateResendAction().getModules();
+
+        assertEquals(2, modules.size());
+        assertEquals("1.0", modules.get("module1"));
+        assertEquals("4.0", modules.get("module4"));
+    }
+}
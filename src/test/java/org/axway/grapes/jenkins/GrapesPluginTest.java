@@ -0,0 +1,81 @@
+package org.axway.grapes.jenkins;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrapesPluginTest {
+
+    @Test
+    public void readModuleHeaderSkipsNestedContent() throws Exception {
+        final String report = "{\"artifacts\":[{\"name\":\"nested\",\"version\":\"0\"}],\"submodules\":[],\"name\":\"module\",\"version\":\"1.0.0\"}";
+
+        final ModuleHeader header = GrapesPlugin.readModuleHeader(new ByteArrayInputStream(report.getBytes("UTF-8")));
+
+        assertEquals("module", header.getName());
+        assertEquals("1.0.0", header.getVersion());
+    }
+
+    @Test
+    public void readModuleHeaderStopsAfterNameAndVersion() throws Exception {
+        // The content after the version is not valid Json, it must not be read
+        final String report = "{\"name\":\"module\",\"version\":\"1.0.0\",\"artifacts\":[ not json";
+
+        final ModuleHeader header = GrapesPlugin.readModuleHeader(new ByteArrayInputStream(report.getBytes("UTF-8")));
+
+        assertEquals("module", header.getName());
+        assertEquals("1.0.0", header.getVersion());
+    }
+
+    @Test
+    public void readModuleHeaderReturnsNullWithoutVersion() throws Exception {
+        final String report = "{\"name\":\"module\",\"artifacts\":[]}";
+
+        assertNull(GrapesPlugin.readModuleHeader(new ByteArrayInputStream(report.getBytes("UTF-8"))));
+    }
+
+    @Test
+    public void buildModuleFilesStartWithTheRootModule() throws Exception {
+        final File rootDir = File.createTempFile("build", "");
+        rootDir.delete();
+        final AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getRootDir()).thenReturn(rootDir);
+        try{
+            GrapesPlugin.getBuildModuleFile(build, "b").write("{}", "UTF-8");
+            GrapesPlugin.getBuildModuleFile(build, "a/c").write("{}", "UTF-8");
+            GrapesPlugin.getBuildModuleFile(build).write("{}", "UTF-8");
+            // a module folder without report
+            GrapesPlugin.getBuildModuleFile(build, "0").getParent().mkdirs();
+
+            final List<String> moduleFiles = new ArrayList<String>();
+            for(FilePath moduleFile: GrapesPlugin.getBuildModuleFiles(build)){
+                moduleFiles.add(moduleFile.getRemote());
+            }
+
+            assertEquals(Arrays.asList(GrapesPlugin.getBuildModuleFile(build).getRemote(), GrapesPlugin.getBuildModuleFile(build, "a/c").getRemote(),
+                    GrapesPlugin.getBuildModuleFile(build, "b").getRemote()), moduleFiles);
+        } finally {
+            new FilePath(rootDir).deleteRecursive();
+        }
+    }
+
+    @Test
+    public void noBuildModuleFiles() throws Exception {
+        final AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getRootDir()).thenReturn(new File("does-not-exist"));
+
+        assertEquals(0, GrapesPlugin.getBuildModuleFiles(build).size());
+    }
+}
@@ -0,0 +1,89 @@
+package org.axway.grapes.jenkins;
+
+import hudson.FilePath;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Module Header Benchmark
+ *
+ * <p>Compares the streaming extraction of the module name and version with the full parsing of a 10 MB module report.
+ * This is not a unit test, run it with: java -cp [test classpath] org.axway.grapes.jenkins.ModuleHeaderBenchmark [iterations]</p>
+ */
+public class ModuleHeaderBenchmark {
+
+    private static final long REPORT_SIZE = 10L * 1024 * 1024;
+
+    public static void main(final String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final File report = createReport();
+
+        try{
+            final FilePath reportPath = new FilePath(report);
+            System.out.println("Report size: " + report.length() / 1024 + " KB");
+
+            // warm-up
+            for(int i = 0 ; i < 3 ; i++){
+                readHeader(reportPath);
+                parseModule(reportPath);
+            }
+
+            long start = System.nanoTime();
+            for(int i = 0 ; i < iterations ; i++){
+                readHeader(reportPath);
+            }
+            final long headerTime = (System.nanoTime() - start) / iterations;
+
+            start = System.nanoTime();
+            for(int i = 0 ; i < iterations ; i++){
+                parseModule(reportPath);
+            }
+            final long fullTime = (System.nanoTime() - start) / iterations;
+
+            System.out.println("Header extraction: " + headerTime / 1000 + " us/op");
+            System.out.println("Full parsing:      " + fullTime / 1000 + " us/op");
+        } finally {
+            report.delete();
+        }
+    }
+
+    private static ModuleHeader readHeader(final FilePath reportPath) throws Exception {
+        return GrapesPlugin.getModuleHeader(reportPath);
+    }
+
+    private static Module parseModule(final FilePath reportPath) throws Exception {
+        return JsonUtils.unserializeModule(reportPath.readToString());
+    }
+
+    /**
+     * Generates a module report with as many artifacts as needed to reach the report size
+     */
+    private static File createReport() throws Exception {
+        final File report = File.createTempFile("module", ".json");
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), "UTF-8"));
+        try{
+            writer.write("{\"name\":\"benchmark\",\"version\":\"1.0.0\",\"artifacts\":[");
+            long written = 0;
+            int index = 0;
+            while(written < REPORT_SIZE){
+                final String artifact = (index > 0 ? "," : "") +
+                        "{\"groupId\":\"org.axway.benchmark\",\"artifactId\":\"artifact-" + index +
+                        "\",\"version\":\"1.0.0\",\"classifier\":\"\",\"type\":\"jar\",\"extension\":\"jar\"}";
+                writer.write(artifact);
+                written += artifact.length();
+                index++;
+            }
+            writer.write("]}");
+        } finally {
+            writer.close();
+        }
+        return report;
+    }
+}
@@ -0,0 +1,100 @@
+package org.axway.grapes.jenkins.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class DeliveredReportCacheTest {
+
+    private File folder;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("delivered-reports", "");
+        folder.delete();
+        folder.mkdirs();
+        file = new File(folder, "delivered-localhost_8080");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void identicalReportIsSkipped() {
+        final DeliveredReportCache cache = new DeliveredReportCache(file, 10, 60000);
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+
+        cache.delivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash");
+
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+        // Another version or another kind of notification is not delivered yet
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.1", "hash"));
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE_BUILD_INFO, "module", "1.0.0", "hash"));
+    }
+
+    @Test
+    public void modifiedReportIsPostedAgain() {
+        final DeliveredReportCache cache = new DeliveredReportCache(file, 10, 60000);
+        cache.delivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash");
+
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "modified"));
+
+        cache.delivered(NotificationType.POST_MODULE, "module", "1.0.0", "modified");
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "modified"));
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+    }
+
+    @Test
+    public void entriesExpire() throws Exception {
+        final DeliveredReportCache cache = new DeliveredReportCache(file, 10, 50);
+        cache.delivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash");
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+
+        Thread.sleep(100);
+
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        final DeliveredReportCache cache = new DeliveredReportCache(file, 2, 60000);
+        cache.delivered(NotificationType.POST_MODULE, "module1", "1.0.0", "hash1");
+        cache.delivered(NotificationType.POST_MODULE, "module2", "1.0.0", "hash2");
+
+        // module1 becomes the most recently used
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module1", "1.0.0", "hash1"));
+        cache.delivered(NotificationType.POST_MODULE, "module3", "1.0.0", "hash3");
+
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module1", "1.0.0", "hash1"));
+        assertFalse(cache.isDelivered(NotificationType.POST_MODULE, "module2", "1.0.0", "hash2"));
+        assertTrue(cache.isDelivered(NotificationType.POST_MODULE, "module3", "1.0.0", "hash3"));
+    }
+
+    @Test
+    public void deliveredReportsAreReloaded() throws Exception {
+        final DeliveredReportCache cache = new DeliveredReportCache(file, 10, 60000);
+        cache.delivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash");
+        cache.delivered(NotificationType.POST_MODULE_BUILD_INFO, "module", "1.0.0", "buildInfoHash");
+        cache.save();
+
+        assertTrue(file.exists());
+        assertEquals(2, FileUtils.readLines(file).size());
+
+        final DeliveredReportCache reloaded = new DeliveredReportCache(file, 10, 60000);
+        assertTrue(reloaded.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "hash"));
+        assertTrue(reloaded.isDelivered(NotificationType.POST_MODULE_BUILD_INFO, "module", "1.0.0", "buildInfoHash"));
+        assertFalse(reloaded.isDelivered(NotificationType.POST_MODULE, "module", "1.0.0", "buildInfoHash"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.axway.grapes.jenkins.cache;
+
+import org.axway.grapes.commons.datamodel.Artifact;
+import org.axway.grapes.commons.datamodel.Module;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class LastVersionCacheTest {
+
+    private static final String SERVER = "http://localhost:8080";
+
+    @Test
+    public void countsHitsAndMisses() {
+        final LastVersionCache cache = new LastVersionCache(10, 60000);
+
+        assertNull(cache.getLastVersion(SERVER, "org.axway:artifact:1.0::jar"));
+        cache.setLastVersion(SERVER, "org.axway:artifact:1.0::jar", "2.0");
+        assertEquals("2.0", cache.getLastVersion(SERVER, "org.axway:artifact:1.0::jar"));
+
+        // Each server has its own last versions
+        assertNull(cache.getLastVersion("http://other:8080", "org.axway:artifact:1.0::jar"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void lastVersionIsSharedByAllTheVersions() {
+        final LastVersionCache cache = new LastVersionCache(10, 60000);
+        cache.setLastVersion(SERVER, "org.axway:artifact:1.0::jar", "2.0");
+
+        assertEquals("2.0", cache.getLastVersion(SERVER, "org.axway:artifact:1.5::jar"));
+        assertNull(cache.getLastVersion(SERVER, "org.axway:artifact:1.0:sources:jar"));
+        assertEquals("org.axway:artifact::jar", LastVersionCache.getCoordinates("org.axway:artifact:1.0::jar"));
+    }
+
+    @Test
+    public void postingANewerVersionEvictsTheOlderLookups() {
+        final LastVersionCache cache = new LastVersionCache(10, 60000);
+        cache.setLastVersion(SERVER, "org.axway:artifact:1.0::jar", "2.0");
+        cache.setLastVersion(SERVER, "org.axway:other:1.0::jar", "1.0");
+
+        final Artifact artifact = new Artifact();
+        artifact.setGroupId("org.axway");
+        artifact.setArtifactId("artifact");
+        artifact.setVersion("3.0");
+        artifact.setClassifier("");
+        artifact.setExtension("jar");
+        final Module module = new Module();
+        module.setName("module");
+        module.setVersion("3.0");
+        module.addArtifact(artifact);
+        cache.invalidate(SERVER, module);
+
+        assertNull(cache.getLastVersion(SERVER, "org.axway:artifact:1.0::jar"));
+        assertEquals("1.0", cache.getLastVersion(SERVER, "org.axway:other:1.0::jar"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        final LastVersionCache cache = new LastVersionCache(2, 60000);
+        cache.setLastVersion(SERVER, "a", "1");
+        cache.setLastVersion(SERVER, "b", "1");
+        cache.getLastVersion(SERVER, "a");
+        cache.setLastVersion(SERVER, "c", "1");
+
+        assertEquals(2, cache.getSize());
+        assertEquals("1", cache.getLastVersion(SERVER, "a"));
+        assertNull(cache.getLastVersion(SERVER, "b"));
+    }
+
+    @Test
+    public void expiredEntryIsLookedUpAgain() throws Exception {
+        final LastVersionCache cache = new LastVersionCache(10, 1);
+        cache.setLastVersion(SERVER, "a", "1");
+        Thread.sleep(10);
+
+        assertNull(cache.getLastVersion(SERVER, "a"));
+        assertEquals(0, cache.getSize());
+    }
+}
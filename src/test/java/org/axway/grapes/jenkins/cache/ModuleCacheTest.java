@@ -0,0 +1,71 @@
+package org.axway.grapes.jenkins.cache;
+
+import hudson.FilePath;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.jenkins.reports.ModuleHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+
+public class ModuleCacheTest {
+
+    private File folder;
+
+    private int parsings;
+
+    private final ModuleCache.Parser parser = new ModuleCache.Parser() {
+        @Override
+        public Module parse(final FilePath moduleFile) throws IOException, InterruptedException {
+            parsings++;
+            return new Module();
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("build", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ModuleCache.release(new FilePath(folder));
+        new FilePath(folder).deleteRecursive();
+    }
+
+    @Test
+    public void moduleIsParsedOnce() throws Exception {
+        final FilePath report = new FilePath(new File(folder, "module.json"));
+        report.write("{\"name\":\"module\",\"version\":\"1.0.0\"}", "UTF-8");
+
+        final Module module = ModuleCache.get(report, parser);
+        assertEquals(module, ModuleCache.get(report, parser));
+        assertEquals(1, parsings);
+    }
+
+    @Test
+    public void releaseDropsTheModuleButKeepsTheHeader() throws Exception {
+        final FilePath report = new FilePath(new File(folder, "module.json"));
+        report.write("{\"name\":\"module\",\"version\":\"1.0.0\"}", "UTF-8");
+        ModuleCache.prime(report, new ModuleHeader("module", "1.0.0"), "digest");
+        ModuleCache.get(report, parser);
+        final long weight = ModuleCache.getModuleWeight();
+
+        ModuleCache.release(new FilePath(folder));
+
+        assertEquals(weight - report.length(), ModuleCache.getModuleWeight());
+        assertNotNull(ModuleCache.getHeader(report));
+        assertEquals("digest", ModuleCache.getDigest(report));
+
+        // parsed again on demand
+        ModuleCache.get(report, parser);
+        assertEquals(2, parsings);
+    }
+}
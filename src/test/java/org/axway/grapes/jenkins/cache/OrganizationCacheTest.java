@@ -0,0 +1,143 @@
+package org.axway.grapes.jenkins.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.axway.grapes.commons.datamodel.Organization;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrganizationCacheTest {
+
+    private static final String SERVER = "http://localhost:8080";
+
+    private File folder;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("organizations", "");
+        folder.delete();
+        folder.mkdirs();
+        file = new File(folder, OrganizationCache.CACHE_FILE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void organizationIsSharedByAllVersions() throws Exception {
+        final OrganizationCache cache = new OrganizationCache(file, 10, 60000);
+        final Organization organization = organization("axway");
+        final PooledGrapesClient client = mockClient(SERVER);
+        when(client.fetchModuleOrganization("module", "1.0")).thenReturn(organization);
+
+        assertTrue(organization == cache.getOrganization(client, "module", "1.0"));
+        assertTrue(organization == cache.getOrganization(client, "module", "2.0"));
+        verify(client, times(1)).fetchModuleOrganization("module", "1.0");
+    }
+
+    @Test
+    public void staleOrganizationIsReturnedAndRefreshedOnce() throws Exception {
+        final OrganizationCache cache = new OrganizationCache(file, 10, 1000);
+        final Organization stale = organization("stale");
+        final Organization refreshed = organization("refreshed");
+        final CountDownLatch release = new CountDownLatch(1);
+        final PooledGrapesClient client = mockClient(SERVER);
+        when(client.fetchModuleOrganization("module", "1.0")).thenReturn(stale);
+        when(client.fetchModuleOrganization("module", "2.0")).thenAnswer(new Answer<Organization>() {
+            @Override
+            public Organization answer(final InvocationOnMock invocation) throws Throwable {
+                release.await();
+                return refreshed;
+            }
+        });
+
+        cache.getOrganization(client, "module", "1.0");
+        Thread.sleep(1100);
+
+        // The stale organization does not wait for the server, the refresh is scheduled once with the last version
+        assertTrue(stale == cache.getOrganization(client, "module", "2.0"));
+        assertTrue(stale == cache.getOrganization(client, "module", "2.0"));
+        release.countDown();
+
+        verify(client, timeout(5000)).fetchModuleOrganization("module", "2.0");
+        Organization organization = stale;
+        for(int i = 0 ; i < 50 && organization == stale ; i++){
+            Thread.sleep(10);
+            organization = cache.getOrganization(client, "module", "2.0");
+        }
+        assertTrue(refreshed == organization);
+        verify(client, times(1)).fetchModuleOrganization("module", "2.0");
+    }
+
+    @Test
+    public void organizationsAreReloaded() throws Exception {
+        final OrganizationCache cache = new OrganizationCache(file, 10, 60000);
+        final PooledGrapesClient client = mockClient(SERVER);
+        when(client.fetchModuleOrganization("module", "1.0")).thenReturn(organization("axway"));
+        cache.getOrganization(client, "module", "1.0");
+        cache.save();
+
+        final OrganizationCache reloaded = new OrganizationCache(file, 10, 60000);
+        reloaded.prewarm(Collections.singletonMap(SERVER, client));
+
+        assertEquals(1, reloaded.getSize());
+        assertEquals("axway", reloaded.getOrganization(client, "module", "1.0").getName());
+        verify(client, times(1)).fetchModuleOrganization("module", "1.0");
+    }
+
+    @Test
+    public void prewarmRefreshesTheStaleOrganizationsOfTheConfiguredServers() throws Exception {
+        final OrganizationCache cache = new OrganizationCache(file, 10, 60000);
+        final PooledGrapesClient client = mockClient(SERVER);
+        final PooledGrapesClient removedClient = mockClient("http://removed:8080");
+        when(client.fetchModuleOrganization("module", "1.0")).thenReturn(organization("axway"));
+        when(removedClient.fetchModuleOrganization("module", "1.0")).thenReturn(organization("axway"));
+        cache.getOrganization(client, "module", "1.0");
+        cache.getOrganization(removedClient, "module", "1.0");
+        cache.save();
+        Thread.sleep(100);
+
+        // Every stored organization is stale
+        final OrganizationCache reloaded = new OrganizationCache(file, 10, 50);
+        reloaded.prewarm(Collections.singletonMap(SERVER, client));
+
+        verify(client, timeout(5000).times(2)).fetchModuleOrganization("module", "1.0");
+        verify(removedClient, never()).withDeadline(any(Deadline.class));
+        assertEquals(1, reloaded.getSize());
+    }
+
+    private static PooledGrapesClient mockClient(final String serverUrl) {
+        final PooledGrapesClient client = mock(PooledGrapesClient.class);
+        when(client.getServerUrl()).thenReturn(serverUrl);
+        when(client.withDeadline(any(Deadline.class))).thenReturn(client);
+        return client;
+    }
+
+    private static Organization organization(final String name) {
+        final Organization organization = new Organization();
+        organization.setName(name);
+        return organization;
+    }
+}
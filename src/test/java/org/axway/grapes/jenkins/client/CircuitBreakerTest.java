@@ -0,0 +1,48 @@
+package org.axway.grapes.jenkins.client;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures(){
+        final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        for(int i = 0 ; i < CircuitBreaker.FAILURE_THRESHOLD - 1 ; i++){
+            assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.record(false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        circuitBreaker.record(false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailures(){
+        final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        circuitBreaker.record(false);
+        circuitBreaker.record(true);
+
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void cancelledRequestIsNotAFailure(){
+        final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.cancel();
+
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
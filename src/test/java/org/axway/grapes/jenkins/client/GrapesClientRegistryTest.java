@@ -0,0 +1,76 @@
+package org.axway.grapes.jenkins.client;
+
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+
+public class GrapesClientRegistryTest {
+
+    @After
+    public void tearDown() {
+        GrapesClientRegistry.reset(null);
+    }
+
+    @Test
+    public void configurationsOfTheSameServerShareTheirConnections() {
+        final GrapesConfig config1 = new GrapesConfig("server1", "localhost", 8080, 1000, 2000, 10, false, null);
+        final GrapesConfig config2 = new GrapesConfig("server2", "localhost", 8080, 3000, 4000, 3, false, null);
+        GrapesClientRegistry.reset(Arrays.asList(config1, config2));
+
+        final PooledGrapesClient client1 = GrapesClientRegistry.get(config1);
+        final PooledGrapesClient client2 = GrapesClientRegistry.get(config2);
+
+        assertSame(client1.getCircuitBreaker(), client2.getCircuitBreaker());
+        assertEquals(3, client1.getMaxConnections());
+        assertEquals(3, client2.getMaxConnections());
+
+        // The timeouts remain those of each configuration
+        assertEquals(1000, client1.getConnectTimeout());
+        assertEquals(2000, client1.getRequestTimeout());
+        assertEquals(3000, client2.getConnectTimeout());
+        assertEquals(4000, client2.getRequestTimeout());
+    }
+
+    @Test
+    public void savingTheConfigurationKeepsTheClients() {
+        final GrapesConfig config = new GrapesConfig("server", "localhost", 8080, 1000, 2000, 10, false, null);
+        GrapesClientRegistry.reset(Collections.singletonList(config));
+        final CircuitBreaker circuitBreaker = GrapesClientRegistry.get(config).getCircuitBreaker();
+
+        GrapesClientRegistry.reset(Collections.singletonList(config));
+        assertSame(circuitBreaker, GrapesClientRegistry.get(config).getCircuitBreaker());
+
+        // Other limits and timeouts for the same server
+        final GrapesConfig updated = new GrapesConfig("server", "localhost", 8080, 500, 500, 2, false, null);
+        GrapesClientRegistry.reset(Collections.singletonList(updated));
+        assertSame(circuitBreaker, GrapesClientRegistry.get(updated).getCircuitBreaker());
+        assertEquals(2, GrapesClientRegistry.get(updated).getMaxConnections());
+        assertEquals(500, GrapesClientRegistry.get(updated).getRequestTimeout());
+
+        // Another server
+        final GrapesConfig moved = new GrapesConfig("server", "localhost", 8081, 500, 500, 2, false, null);
+        GrapesClientRegistry.reset(Collections.singletonList(moved));
+        assertNotSame(circuitBreaker, GrapesClientRegistry.get(moved).getCircuitBreaker());
+    }
+
+    @Test
+    public void theLimitCanBeResized() {
+        final GrapesConfig config = new GrapesConfig("server", "localhost", 8080, 1000, 2000, 4, false, null);
+        GrapesClientRegistry.reset(Collections.singletonList(config));
+        final PooledGrapesClient client = GrapesClientRegistry.get(config);
+        client.setMaxConnections(2);
+        assertEquals(2, client.getMaxConnections());
+        assertEquals(0, client.getActiveConnections());
+
+        client.setMaxConnections(6);
+        assertEquals(6, client.getMaxConnections());
+        assertEquals(0, client.getActiveConnections());
+    }
+}
@@ -0,0 +1,116 @@
+package org.axway.grapes.jenkins.client;
+
+import org.axway.grapes.commons.datamodel.Dependency;
+import org.axway.grapes.utils.client.GrapesClient;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PooledGrapesClientTest {
+
+    @Test
+    public void expiredDeadlinesDoNotOpenTheCircuitBreaker() throws Exception {
+        final GrapesClient grapesClient = mock(GrapesClient.class);
+        when(grapesClient.getModuleAncestors(anyString(), anyString())).thenAnswer(new Answer<List<Dependency>>() {
+            @Override
+            public List<Dependency> answer(final InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(1000);
+                return null;
+            }
+        });
+        final PooledGrapesClient pool = new PooledGrapesClient(grapesClient, 10);
+
+        for(int i = 0 ; i < CircuitBreaker.FAILURE_THRESHOLD + 1 ; i++){
+            try{
+                pool.withDeadline(Deadline.after(20, TimeUnit.MILLISECONDS)).getModuleAncestors("module" + i, "1.0");
+                fail("The request should have run out of time");
+            } catch (GrapesCommunicationException e){
+                assertEquals(504, e.getHttpStatus());
+            }
+        }
+
+        assertEquals(0, pool.getCircuitBreaker().getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, pool.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void connectionContentionDoesNotOpenTheCircuitBreaker() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final GrapesClient grapesClient = mock(GrapesClient.class);
+        when(grapesClient.getArtifactLastVersion("busy")).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) throws Throwable {
+                release.await();
+                return "1.0";
+            }
+        });
+        final PooledGrapesClient pool = new PooledGrapesClient(grapesClient, 1);
+
+        // holds the only connection of the pool
+        final Thread busy = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    pool.getArtifactLastVersion("busy");
+                } catch (GrapesCommunicationException e){
+                    // not expected
+                }
+            }
+        });
+        busy.start();
+        while(pool.getActiveConnections() == 0){
+            Thread.sleep(5);
+        }
+
+        try{
+            for(int i = 0 ; i < CircuitBreaker.FAILURE_THRESHOLD + 1 ; i++){
+                try{
+                    pool.withDeadline(Deadline.after(20, TimeUnit.MILLISECONDS)).getArtifactLastVersion("other" + i);
+                    fail("No connection should have been available");
+                } catch (GrapesCommunicationException e){
+                    assertEquals(504, e.getHttpStatus());
+                }
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, pool.getCircuitBreaker().getState());
+        } finally {
+            release.countDown();
+            busy.join();
+        }
+    }
+
+    @Test
+    public void serverErrorsOpenTheCircuitBreaker() throws Exception {
+        final GrapesClient grapesClient = mock(GrapesClient.class);
+        when(grapesClient.getArtifactLastVersion(anyString())).thenThrow(new GrapesCommunicationException("Internal error", 500));
+        final PooledGrapesClient pool = new PooledGrapesClient(grapesClient, 1);
+
+        for(int i = 0 ; i < CircuitBreaker.FAILURE_THRESHOLD ; i++){
+            try{
+                pool.getArtifactLastVersion("artifact" + i);
+                fail("The server error should have been reported");
+            } catch (GrapesCommunicationException e){
+                assertEquals(500, e.getHttpStatus());
+            }
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, pool.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void serverUrl(){
+        assertEquals("http://grapes:8080", PooledGrapesClient.getServerUrl("grapes", "8080"));
+        assertEquals("https://grapes:8443", PooledGrapesClient.getServerUrl("https://grapes", "8443"));
+        assertEquals("http://grapes", PooledGrapesClient.getServerUrl("grapes", ""));
+    }
+}
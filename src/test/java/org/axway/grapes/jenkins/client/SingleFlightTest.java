@@ -0,0 +1,61 @@
+package org.axway.grapes.jenkins.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class SingleFlightTest {
+
+    @Test
+    public void identicalConcurrentRequestsAreSentOnce() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger sent = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Callable<String> request = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                sent.incrementAndGet();
+                release.await();
+                return "2.0";
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<String> leader = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return singleFlight.execute("lastVersion|gavc", request, Long.MAX_VALUE);
+                }
+            });
+            while(singleFlight.size() == 0){
+                Thread.sleep(1);
+            }
+
+            final Future<String> follower = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return singleFlight.execute("lastVersion|gavc", request, TimeUnit.SECONDS.toMillis(10));
+                }
+            });
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("2.0", leader.get());
+            assertEquals("2.0", follower.get());
+            assertEquals(1, sent.get());
+            assertEquals(0, singleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.axway.grapes.jenkins.notifications;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleBuild;
+import org.axway.grapes.commons.utils.JsonUtils;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.axway.grapes.jenkins.cache.DeliveredReportCache;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.TestCase.fail;
+
+public class NotificationHandlerTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void forcedNotificationBypassesTheDeliveredReports() throws Exception {
+        // Nothing listens on the port of the server: any request fails
+        final GrapesConfig config = new GrapesConfig("grapes-server", "localhost", getClosedPort(), 1000, 1000, 2, false, null);
+        final FreeStyleBuild build = jenkins.buildAndAssertSuccess(jenkins.createFreeStyleProject("project"));
+
+        final Map<String, String> buildInfo = new HashMap<String, String>();
+        buildInfo.put(GrapesPlugin.BUILD_INFO_JENKINS_HOST, "localhost");
+        final FilePath buildInfoFile = GrapesPlugin.getBuildBuildInfoFile(build);
+        buildInfoFile.write(JsonUtils.serialize(buildInfo), "UTF-8");
+        DeliveredReportCache.get(config).delivered(NotificationType.POST_MODULE_BUILD_INFO, "module", "1.0.0", NotificationHandler.getBuildInfoHash(buildInfo));
+
+        final ResendBuildAction notification = new ResendBuildAction(NotificationType.POST_MODULE_BUILD_INFO, buildInfoFile, "module", "1.0.0");
+
+        // Already delivered: the build info is not posted
+        new NotificationHandler(config).send(notification, build);
+
+        try{
+            new NotificationHandler(config, true).send(notification, build);
+            fail("The build info should have been posted to the unreachable server");
+        } catch (GrapesCommunicationException e){
+            // expected
+        }
+    }
+
+    private static int getClosedPort() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+}
@@ -0,0 +1,102 @@
+package org.axway.grapes.jenkins.notifications;
+
+import hudson.model.AbstractBuild;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationSchedulerTest {
+
+    @Test
+    public void buildInfoIsSentAfterModule() throws Exception {
+        final ResendBuildAction buildInfo = new ResendBuildAction(GrapesNotification.NotificationType.POST_MODULE_BUILD_INFO, null, "module", "1.0");
+        final ResendBuildAction module = new ResendBuildAction(GrapesNotification.NotificationType.POST_MODULE, null, "module", "1.0");
+
+        final List<GrapesNotification> sent = Collections.synchronizedList(new ArrayList<GrapesNotification>());
+        final NotificationHandler handler = mock(NotificationHandler.class);
+        when(handler.getDeadline()).thenReturn(Deadline.none());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                sent.add((GrapesNotification) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(handler).send(any(GrapesNotification.class), any(AbstractBuild.class));
+
+        final RecordingListener listener = new RecordingListener();
+        new NotificationScheduler(handler).send(null, Arrays.asList(buildInfo, module), listener);
+
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(0) == module);
+        assertTrue(sent.get(1) == buildInfo);
+        assertEquals(2, listener.sent);
+        assertEquals(0, listener.failed);
+    }
+
+    @Test
+    public void dependentsArePostponedWhenPrerequisiteFails() throws Exception {
+        final ResendBuildAction module = new ResendBuildAction(GrapesNotification.NotificationType.POST_MODULE, null, "module", "1.0");
+        final ResendBuildAction buildInfo = new ResendBuildAction(GrapesNotification.NotificationType.POST_MODULE_BUILD_INFO, null, "module", "1.0");
+
+        final NotificationHandler handler = mock(NotificationHandler.class);
+        when(handler.getDeadline()).thenReturn(Deadline.none());
+        doThrow(new RuntimeException("Server down")).when(handler).send(eq(module), any(AbstractBuild.class));
+
+        final RecordingListener listener = new RecordingListener();
+        new NotificationScheduler(handler).send(null, Arrays.asList(module, buildInfo), listener);
+
+        verify(handler, never()).send(eq(buildInfo), any(AbstractBuild.class));
+        verify(handler).postpone(eq(buildInfo), any(AbstractBuild.class));
+        assertEquals(0, listener.sent);
+        assertEquals(2, listener.failed);
+    }
+
+    @Test
+    public void notificationsArePostponedWhenBudgetIsExhausted() throws Exception {
+        final ResendBuildAction module = new ResendBuildAction(GrapesNotification.NotificationType.POST_MODULE, null, "module", "1.0");
+
+        final NotificationHandler handler = mock(NotificationHandler.class);
+        when(handler.getDeadline()).thenReturn(Deadline.after(0, TimeUnit.MILLISECONDS));
+
+        final RecordingListener listener = new RecordingListener();
+        new NotificationScheduler(handler).send(null, Arrays.asList(module), listener);
+
+        verify(handler, never()).send(eq(module), any(AbstractBuild.class));
+        verify(handler).postpone(eq(module), any(AbstractBuild.class));
+        assertEquals(1, listener.failed);
+    }
+
+    private static class RecordingListener implements NotificationScheduler.Listener {
+        private int sent = 0;
+        private int failed = 0;
+
+        @Override
+        public void onSent(final int index, final GrapesNotification notification) {
+            sent++;
+        }
+
+        @Override
+        public void onFailed(final int index, final GrapesNotification notification, final Exception cause) {
+            failed++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.axway.grapes.jenkins.notifications.maven;
+
+import hudson.FilePath;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class GrapesMavenPluginNotificationTest {
+
+    private FilePath folder;
+
+    @Before
+    public void setUp() throws Exception {
+        final File file = File.createTempFile("reports", "");
+        file.delete();
+        folder = new FilePath(file);
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        folder.deleteRecursive();
+    }
+
+    @Test
+    public void unreadableReportsAreSkipped() throws Exception {
+        final FilePath first = folder.child("first.json");
+        first.write("{\"name\":\"first\",\"version\":\"1.0.0\"}", "UTF-8");
+        final FilePath malformed = folder.child("malformed.json");
+        malformed.write("{\"name\":", "UTF-8");
+        final FilePath missing = folder.child("missing.json");
+        final FilePath second = folder.child("second.json");
+        second.write("{\"name\":\"second\",\"version\":\"2.0.0\"}", "UTF-8");
+
+        final List<GrapesNotification> notifications = GrapesMavenPluginNotification.GrapesMavenPluginNotificationDescriptorImpl
+                .createNotifications(Arrays.asList(first, malformed, missing, second));
+
+        assertEquals(2, notifications.size());
+        assertEquals("first", notifications.get(0).getModuleName());
+        assertEquals("1.0.0", notifications.get(0).getModuleVersion());
+        assertEquals(first.getRemote(), notifications.get(0).getMimePath().getRemote());
+        assertEquals("second", notifications.get(1).getModuleName());
+        assertEquals(second.getRemote(), notifications.get(1).getMimePath().getRemote());
+    }
+}
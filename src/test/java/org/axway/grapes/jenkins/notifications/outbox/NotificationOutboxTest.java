@@ -0,0 +1,67 @@
+package org.axway.grapes.jenkins.notifications.outbox;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.axway.grapes.jenkins.GrapesNotifier.GrapesNotifierDescriptor;
+import org.axway.grapes.jenkins.config.GrapesConfig;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.resend.ResendBuildAction;
+import org.axway.grapes.jenkins.resend.ResendJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class NotificationOutboxTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void restoredEntryIsDispatchedAndRemoved() throws Exception {
+        // Nothing listens on the port of the server: the notification fails at once
+        final GrapesConfig config = new GrapesConfig("grapes-server", "localhost", getClosedPort(), 1000, 1000, 2, false, null);
+        jenkins.jenkins.getDescriptorByType(GrapesNotifierDescriptor.class).setServers(Collections.singletonList(config));
+
+        final FreeStyleProject project = jenkins.createFreeStyleProject("project");
+        final FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        final List<GrapesNotification> notifications = Collections.<GrapesNotification>singletonList(
+                new ResendBuildAction(GrapesNotification.NotificationType.PROMOTE, null, "module", "1.0.0"));
+
+        final NotificationOutbox outbox = NotificationOutbox.getInstance();
+        final OutboxEntry entry = outbox.store(build, config, notifications);
+        final File entryFile = new File(NotificationOutbox.getOutboxFolder(), entry.getId() + ".json");
+        assertTrue(entryFile.exists());
+
+        outbox.restorePendingEntries();
+        waitForRemoval(entryFile);
+
+        assertFalse(entryFile.exists());
+        final List<ResendBuildAction> pending = ResendJournal.get().getResendActions("project", build.getNumber());
+        assertEquals(1, pending.size());
+        assertEquals(GrapesNotification.NotificationType.PROMOTE, pending.get(0).getNotificationAction());
+        assertEquals("module", pending.get(0).getModuleName());
+    }
+
+    private static int getClosedPort() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    private static void waitForRemoval(final File file) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 30000;
+        while(file.exists() && System.currentTimeMillis() < timeout){
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.axway.grapes.jenkins.reports;
+
+import org.axway.grapes.commons.datamodel.Artifact;
+import org.axway.grapes.commons.datamodel.Dependency;
+import org.axway.grapes.commons.datamodel.Module;
+import org.axway.grapes.commons.datamodel.Organization;
+import org.axway.grapes.commons.datamodel.Scope;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.client.PooledGrapesClient;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrapesBuildActionTest {
+
+    // Never answers before the lookup is cancelled
+    private static final Answer<Object> BLOCKING = new Answer<Object>() {
+        @Override
+        public Object answer(final InvocationOnMock invocation) throws Throwable {
+            Thread.sleep(60000);
+            return null;
+        }
+    };
+
+    @Test
+    public void lookupsThatDoNotAnswerInTimeAreUnknown() throws Exception {
+        final Dependency fast = dependency("fast");
+        final Dependency slow = dependency("slow");
+        final Module module = new Module();
+        module.setName("module");
+        module.setVersion("1.0");
+        module.addDependency(fast);
+        module.addDependency(slow);
+
+        final Organization organization = new Organization();
+        organization.setName("organization");
+        organization.getCorporateGroupIdPrefixes().add("org.axway");
+
+        final PooledGrapesClient client = mock(PooledGrapesClient.class);
+        when(client.getDeadline()).thenReturn(Deadline.after(1, TimeUnit.SECONDS));
+        when(client.withDeadline(any(Deadline.class))).thenReturn(client);
+        when(client.getModuleOrganization("module", "1.0")).thenReturn(organization);
+        doAnswer(BLOCKING).when(client).getModuleAncestors("module", "1.0");
+        doAnswer(BLOCKING).when(client).getArtifactLastVersion(anyString());
+        doReturn("2.0").when(client).getArtifactLastVersion(fast.getTarget().getGavc());
+
+        final long start = System.currentTimeMillis();
+        final GrapesBuildAction action = new GrapesBuildAction(module, client);
+        final long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(action.isInitOk());
+        assertEquals("2.0", action.getCorporateDependencies().get(fast));
+        assertEquals(GrapesBuildAction.UNKNOWN, action.getCorporateDependencies().get(slow));
+        assertTrue(action.isAncestorsUnknown());
+        assertTrue(action.getAncestors().isEmpty());
+        // The budget of the notifications is one second
+        assertTrue("Took " + elapsed + " ms", elapsed < 5000);
+    }
+
+    private static Dependency dependency(final String artifactId) {
+        final Artifact artifact = new Artifact();
+        artifact.setGroupId("org.axway");
+        artifact.setArtifactId(artifactId);
+        artifact.setVersion("1.0");
+        artifact.setClassifier("");
+        artifact.setExtension("jar");
+        final Dependency dependency = new Dependency();
+        dependency.setSourceName("module");
+        dependency.setSourceVersion("1.0");
+        dependency.setTarget(artifact);
+        dependency.setScope(Scope.COMPILE);
+        return dependency;
+    }
+}
@@ -0,0 +1,120 @@
+package org.axway.grapes.jenkins.reports;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.FreeStyleProject;
+import org.axway.grapes.jenkins.GrapesPlugin;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReportBlobStoreTest {
+
+    private static final String REPORT = "{\"name\":\"module\",\"version\":\"1.0.0\"}";
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private FreeStyleProject project;
+
+    private ReportBlobStore store;
+
+    private String digest;
+
+    @Before
+    public void setUp() throws Exception {
+        project = jenkins.createFreeStyleProject("project");
+        store = ReportBlobStore.open();
+
+        digest = Util.getDigestOf(REPORT);
+        final FilePath tempFile = store.createTempFile();
+        tempFile.write(REPORT, "UTF-8");
+        store.add(tempFile, digest);
+    }
+
+    private FilePath getReport(final File folder) {
+        return new FilePath(new File(new File(folder, GrapesPlugin.REPORT_FOLDER), GrapesPlugin.MODULE_REPORT_FILE));
+    }
+
+    private File getBuildFolder(final int number) {
+        return new File(project.getBuildDir(), String.valueOf(number));
+    }
+
+    @Test
+    public void reportIsDeletedWithItsLastReference() throws Exception {
+        assertTrue(store.reference(getReport(getBuildFolder(1)), digest));
+        assertTrue(store.reference(getReport(getBuildFolder(2)), digest));
+        assertEquals(2, store.getReferenceCount(digest));
+        assertEquals(REPORT, ReportStorage.readToString(getReport(getBuildFolder(1))));
+
+        store.release(getBuildFolder(1));
+        assertEquals(1, store.getReferenceCount(digest));
+        assertTrue(ReportBlobStore.getBlob(digest).exists());
+
+        store.release(getBuildFolder(2));
+        assertEquals(0, store.getReferenceCount(digest));
+        assertFalse(ReportBlobStore.getBlob(digest).exists());
+    }
+
+    @Test
+    public void referencingTwiceCountsOnce() throws Exception {
+        store.reference(getReport(getBuildFolder(1)), digest);
+        store.reference(getReport(getBuildFolder(1)), digest);
+
+        assertEquals(1, store.getReferenceCount(digest));
+    }
+
+    @Test
+    public void movedReferencesAreReleasedFromTheirNewFolder() throws Exception {
+        final File oldFolder = project.getRootDir();
+        final File newFolder = new File(oldFolder.getParentFile(), "renamed");
+        store.reference(getReport(getBuildFolder(1)), digest);
+
+        store.move(oldFolder, newFolder);
+        store.release(oldFolder);
+        assertEquals(1, store.getReferenceCount(digest));
+
+        store.release(new File(new File(newFolder, "builds"), "1"));
+        assertEquals(0, store.getReferenceCount(digest));
+    }
+
+    @Test
+    public void indexIsReloaded() throws Exception {
+        store.reference(getReport(getBuildFolder(1)), digest);
+        store.reference(getReport(getBuildFolder(2)), digest);
+
+        assertEquals(2, ReportBlobStore.open().getReferenceCount(digest));
+    }
+
+    @Test
+    public void interruptedUpdateRebuildsTheIndex() throws Exception {
+        store.reference(getReport(getBuildFolder(1)), digest);
+
+        // Jenkins stopped after the reference was written, before the index was saved
+        getReport(getBuildFolder(2)).write(ReportBlobStore.REFERENCE_PREFIX + digest, "UTF-8");
+        new FilePath(new File(new File(jenkins.jenkins.getRootDir(), GrapesPlugin.GRAPES_WORKING_FOLDER), ReportBlobStore.PENDING_FILE)).touch(0);
+
+        final ReportBlobStore reopened = ReportBlobStore.open();
+        assertEquals(2, reopened.getReferenceCount(digest));
+
+        reopened.release(getBuildFolder(1));
+        assertTrue(ReportBlobStore.getBlob(digest).exists());
+    }
+
+    @Test
+    public void readReference() throws Exception {
+        final String reference = ReportBlobStore.REFERENCE_PREFIX + digest;
+
+        assertEquals(digest, ReportBlobStore.readReference(new ByteArrayInputStream(reference.getBytes("UTF-8"))));
+        assertNull(ReportBlobStore.readReference(new ByteArrayInputStream(REPORT.getBytes("UTF-8"))));
+    }
+}
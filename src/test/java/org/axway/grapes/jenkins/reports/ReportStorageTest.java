@@ -0,0 +1,98 @@
+package org.axway.grapes.jenkins.reports;
+
+import hudson.FilePath;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReportStorageTest {
+
+    private static final String REPORT = "{\"name\":\"module\",\"version\":\"1.0.0\"}";
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("module", ".json");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readPlainReport() throws Exception {
+        // Written by the previous versions of the plugin
+        final FilePath report = new FilePath(file);
+        report.write(REPORT, "UTF-8");
+
+        assertEquals(REPORT, ReportStorage.readToString(report));
+        assertTrue(ReportStorage.isPlain(report));
+        assertEquals(report.digest(), ReportStorage.digest(report));
+    }
+
+    @Test
+    public void readCompressedReport() throws Exception {
+        final FilePath report = new FilePath(file);
+        final OutputStream out = new GZIPOutputStream(report.write());
+        out.write(REPORT.getBytes("UTF-8"));
+        out.close();
+
+        assertEquals(REPORT, ReportStorage.readToString(report));
+        assertFalse(ReportStorage.isPlain(report));
+        assertEquals(new FilePath(writePlainCopy()).digest(), ReportStorage.digest(report));
+    }
+
+    @Test
+    public void emptyReportIsPlain() throws Exception {
+        final FilePath report = new FilePath(file);
+
+        assertTrue(ReportStorage.isPlain(report));
+        assertEquals("", ReportStorage.readToString(report));
+    }
+
+    @Test
+    public void gzipMagicIsRequired() throws Exception {
+        final FilePath report = new FilePath(file);
+        final OutputStream out = report.write();
+        // First byte of the gzip magic only
+        out.write(0x1f);
+        out.close();
+
+        assertTrue(ReportStorage.isPlain(report));
+    }
+
+    @Test
+    public void gzipCodecRoundTrip() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final OutputStream out = ReportStorage.Codec.GZIP.encode(bytes);
+        out.write(REPORT.getBytes("UTF-8"));
+        out.close();
+
+        // Readable by any gzip reader
+        assertEquals(REPORT, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8"));
+        assertEquals(REPORT, IOUtils.toString(ReportStorage.Codec.GZIP.decode(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8"));
+        assertTrue(ReportStorage.Codec.GZIP.matches(bytes.toByteArray(), bytes.size()));
+        assertFalse(ReportStorage.Codec.GZIP.matches(REPORT.getBytes("UTF-8"), REPORT.length()));
+    }
+
+    private File writePlainCopy() throws Exception {
+        final File copy = File.createTempFile("module", ".json");
+        copy.deleteOnExit();
+        new FilePath(copy).write(REPORT, "UTF-8");
+        return copy;
+    }
+}
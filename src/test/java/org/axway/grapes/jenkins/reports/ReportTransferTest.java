@@ -0,0 +1,84 @@
+package org.axway.grapes.jenkins.reports;
+
+import hudson.FilePath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReportTransferTest {
+
+    private FilePath workspace;
+
+    private FilePath buildFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        workspace = createFolder("workspace");
+        buildFolder = createFolder("build");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        workspace.deleteRecursive();
+        buildFolder.deleteRecursive();
+    }
+
+    private static FilePath createFolder(final String prefix) throws Exception {
+        final File file = File.createTempFile(prefix, "");
+        file.delete();
+        final FilePath folder = new FilePath(file);
+        folder.mkdirs();
+        return folder;
+    }
+
+    @Test
+    public void transferAllKeepsTheOrderAndCollectsTheErrors() throws Exception {
+        final String reportB = "{\"name\":\"b\",\"version\":\"1.0.0\"}";
+        final String reportA = "{\"name\":\"a\",\"version\":\"1.0.0\"}";
+        workspace.child("b/module.json").write(reportB, "UTF-8");
+        workspace.child("broken/module.json").write("{\"name\":\"broken\"}", "UTF-8");
+        workspace.child("a/module.json").write(reportA, "UTF-8");
+
+        final Map<String, FilePath> targets = new LinkedHashMap<String, FilePath>();
+        for(String module: Arrays.asList("b", "missing", "broken", "a")){
+            targets.put(module + "/module.json", buildFolder.child(module).child("module.json"));
+        }
+
+        final ReportTransfer.ModuleReports reports = ReportTransfer.transferAll(workspace, targets, null);
+
+        assertEquals(Arrays.asList("b/module.json", "a/module.json"), new ArrayList<String>(reports.getSummaries().keySet()));
+        assertEquals("b", reports.getSummaries().get("b/module.json").getHeader().getName());
+        assertEquals(reportB, ReportStorage.readToString(targets.get("b/module.json")));
+        assertEquals(reportA, ReportStorage.readToString(targets.get("a/module.json")));
+
+        // a missing report is not an error, an invalid one is
+        assertEquals(1, reports.getErrors().size());
+        assertTrue(reports.getErrors().containsKey("broken/module.json"));
+        assertFalse(targets.get("missing/module.json").exists());
+        assertFalse(targets.get("broken/module.json").exists());
+    }
+
+    @Test
+    public void transferAllSkipsTheReportsAlreadyCopied() throws Exception {
+        final String report = "{\"name\":\"a\",\"version\":\"1.0.0\"}";
+        workspace.child("a/module.json").write(report, "UTF-8");
+        final Map<String, FilePath> targets = new LinkedHashMap<String, FilePath>();
+        targets.put("a/module.json", buildFolder.child("a").child("module.json"));
+
+        ReportTransfer.transferAll(workspace, targets, null);
+        final ReportTransfer.ModuleReports reports = ReportTransfer.transferAll(workspace, targets, null);
+
+        assertFalse(reports.getSummaries().get("a/module.json").hasPayload());
+        assertEquals(report, ReportStorage.readToString(targets.get("a/module.json")));
+    }
+}
@@ -0,0 +1,168 @@
+package org.axway.grapes.jenkins.resend;
+
+import hudson.model.AbstractBuild;
+import org.axway.grapes.jenkins.client.Deadline;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.axway.grapes.jenkins.notifications.GrapesNotification.NotificationType;
+import org.axway.grapes.jenkins.notifications.NotificationHandler;
+import org.axway.grapes.utils.client.GrapesCommunicationException;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResendJobTest {
+
+    @Test
+    public void countsDoneAndFailedNotifications() throws Exception {
+        final ResendBuildAction failingModule = action(NotificationType.POST_MODULE, "failing");
+        final NotificationHandler handler = mockHandler();
+        doThrow(new GrapesCommunicationException("Server error", 500)).when(handler).send(eq(failingModule), any(AbstractBuild.class));
+
+        final Queue<ResendJob.BuildTask> lane = new ConcurrentLinkedQueue<ResendJob.BuildTask>();
+        lane.add(task(handler, action(NotificationType.POST_MODULE, "module"), action(NotificationType.POST_MODULE_BUILD_INFO, "module")));
+        // The build info depends on the failing module: it is not sent
+        lane.add(task(handler, failingModule, action(NotificationType.POST_MODULE_BUILD_INFO, "failing")));
+        lane.add(task(handler, action(NotificationType.PROMOTE, "other")));
+
+        final ResendJob job = new ResendJob(Collections.singletonMap("server", lane), Collections.singletonMap("server", 2));
+        assertEquals(5, job.getTotal());
+        assertEquals(5, job.getRemaining());
+
+        job.start();
+        awaitEnd(job);
+
+        assertEquals(ResendJob.State.COMPLETED, job.getState());
+        assertEquals(3, job.getDone());
+        assertEquals(2, job.getFailed());
+        assertEquals(0, job.getRemaining());
+        verify(handler, times(4)).send(any(GrapesNotification.class), any(AbstractBuild.class));
+    }
+
+    @Test
+    public void cancelledJobCanBeResumed() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResendBuildAction first = action(NotificationType.POST_MODULE, "first");
+        final NotificationHandler handler = mockHandler();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        }).when(handler).send(eq(first), any(AbstractBuild.class));
+
+        final ResendJob.BuildTask second = task(handler, action(NotificationType.POST_MODULE, "second"));
+        final ResendJob.BuildTask third = task(handler, action(NotificationType.POST_MODULE, "third"));
+        final Queue<ResendJob.BuildTask> lane = new ConcurrentLinkedQueue<ResendJob.BuildTask>(Arrays.asList(task(handler, first), second, third));
+
+        final ResendJob job = new ResendJob(Collections.singletonMap("server", lane), Collections.singletonMap("server", 1)).start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        job.cancel();
+        release.countDown();
+        awaitEnd(job);
+
+        // The build in progress is completed, the others are not sent
+        assertEquals(ResendJob.State.CANCELLED, job.getState());
+        assertEquals(1, job.getDone());
+        assertEquals(2, job.getRemaining());
+        verify(handler, times(1)).send(any(GrapesNotification.class), any(AbstractBuild.class));
+
+        // Resuming starts a job with the notifications still pending
+        final Queue<ResendJob.BuildTask> pending = new ConcurrentLinkedQueue<ResendJob.BuildTask>(Arrays.asList(second, third));
+        final ResendJob resumed = new ResendJob(Collections.singletonMap("server", pending), Collections.singletonMap("server", 1)).start();
+        awaitEnd(resumed);
+
+        assertEquals(ResendJob.State.COMPLETED, resumed.getState());
+        assertEquals(2, resumed.getDone());
+        verify(handler, times(3)).send(any(GrapesNotification.class), any(AbstractBuild.class));
+    }
+
+    @Test
+    public void buildsSentAtTheSameTimeAreBoundedPerServer() throws Exception {
+        final AtomicInteger[] concurrency = {new AtomicInteger(), new AtomicInteger()};
+        final AtomicInteger[] maxConcurrency = {new AtomicInteger(), new AtomicInteger()};
+        final Map<String, Queue<ResendJob.BuildTask>> lanes = new LinkedHashMap<String, Queue<ResendJob.BuildTask>>();
+        final Map<String, Integer> laneLimits = new HashMap<String, Integer>();
+        laneLimits.put("server0", 2);
+        laneLimits.put("server1", 1);
+
+        for(int server = 0 ; server < 2 ; server++){
+            final NotificationHandler handler = mockHandler();
+            final AtomicInteger current = concurrency[server];
+            final AtomicInteger max = maxConcurrency[server];
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(final InvocationOnMock invocation) throws Throwable {
+                    final int running = current.incrementAndGet();
+                    synchronized (max){
+                        max.set(Math.max(max.get(), running));
+                    }
+                    Thread.sleep(50);
+                    current.decrementAndGet();
+                    return null;
+                }
+            }).when(handler).send(any(GrapesNotification.class), any(AbstractBuild.class));
+
+            final Queue<ResendJob.BuildTask> lane = new ConcurrentLinkedQueue<ResendJob.BuildTask>();
+            for(int i = 0 ; i < 5 ; i++){
+                lane.add(task(handler, action(NotificationType.POST_MODULE, "module" + i)));
+            }
+            lanes.put("server" + server, lane);
+        }
+
+        final ResendJob job = new ResendJob(lanes, laneLimits).start();
+        awaitEnd(job);
+
+        assertEquals(10, job.getDone());
+        assertEquals(2, maxConcurrency[0].get());
+        assertEquals(1, maxConcurrency[1].get());
+    }
+
+    private static NotificationHandler mockHandler() {
+        final NotificationHandler handler = mock(NotificationHandler.class);
+        when(handler.getDeadline()).thenReturn(Deadline.none());
+        return handler;
+    }
+
+    private static ResendBuildAction action(final NotificationType type, final String moduleName) {
+        return new ResendBuildAction(type, null, moduleName, "1.0");
+    }
+
+    // The handler is mocked, the build is not used
+    private static ResendJob.BuildTask task(final NotificationHandler handler, final ResendBuildAction... resendActions) {
+        final List<ResendBuildAction> actions = Arrays.asList(resendActions);
+        return new ResendJob.BuildTask(handler, null, actions);
+    }
+
+    private static void awaitEnd(final ResendJob job) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while(job.isRunning() && System.currentTimeMillis() < timeout){
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.axway.grapes.jenkins.resend;
+
+import org.apache.commons.io.FileUtils;
+import org.axway.grapes.jenkins.notifications.GrapesNotification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class ResendJournalTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("resend-journal", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void pendingNotificationsAreReplayed() throws Exception {
+        final File file = new File(folder, ResendJournal.JOURNAL_FILE);
+        final ResendJournal journal = new ResendJournal(file);
+        journal.enqueue("project", 1, ".module-1.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        journal.enqueue("project", 1, ".module-1.0-PROMOTE-to-resend", action(GrapesNotification.NotificationType.PROMOTE));
+        journal.enqueue("project", 2, ".module-1.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        journal.ack("project", ".module-1.0-PROMOTE-to-resend");
+        journal.close();
+
+        final ResendJournal replayed = new ResendJournal(file);
+        replayed.open();
+
+        // The notification has been moved to the last build
+        assertTrue(replayed.getResendActions("project", 1).isEmpty());
+        final List<ResendBuildAction> resendActions = replayed.getResendActions("project", 2);
+        assertEquals(1, resendActions.size());
+        assertEquals(GrapesNotification.NotificationType.POST_MODULE, resendActions.get(0).getNotificationAction());
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    public void compactionKeepsOnlyPendingNotifications() throws Exception {
+        final File file = new File(folder, ResendJournal.JOURNAL_FILE);
+        final ResendJournal journal = new ResendJournal(file);
+        for(int i = 0; i < 10; i++){
+            journal.enqueue("project", i, ".module-" + i + "-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+            journal.ack("project", ".module-" + i + "-POST_MODULE-to-resend");
+        }
+        journal.enqueue("project", 10, ".module-10-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        journal.compact();
+        journal.discardBuild("project", 10);
+        journal.close();
+
+        assertEquals(2, FileUtils.readLines(file).size());
+
+        final ResendJournal replayed = new ResendJournal(file);
+        replayed.open();
+        assertEquals(0, replayed.size());
+    }
+
+    @Test
+    public void truncatedRecordIsIgnored() throws Exception {
+        final File file = new File(folder, ResendJournal.JOURNAL_FILE);
+        final ResendJournal journal = new ResendJournal(file);
+        journal.enqueue("project", 1, ".module-1.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        journal.close();
+        FileUtils.writeStringToFile(file, "E|2|.module-2.0-POST_MODULE-to-resend|project|{\"notif", true);
+
+        final ResendJournal replayed = new ResendJournal(file);
+        replayed.open();
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    public void recordAppendedAfterATruncatedRecordIsReplayed() throws Exception {
+        final File file = new File(folder, ResendJournal.JOURNAL_FILE);
+        final ResendJournal journal = new ResendJournal(file);
+        journal.enqueue("project", 1, ".module-1.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        journal.close();
+        FileUtils.writeStringToFile(file, "E|2|.module-2.0-POST_MODULE-to-resend|project|{\"notif", true);
+
+        // Restarted after the crash
+        final ResendJournal restarted = new ResendJournal(file);
+        restarted.open();
+        restarted.enqueue("project", 3, ".module-3.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+        restarted.close();
+
+        assertEquals(2, FileUtils.readLines(file).size());
+        final ResendJournal replayed = new ResendJournal(file);
+        replayed.open();
+        assertEquals(2, replayed.size());
+        assertEquals(1, replayed.getResendActions("project", 3).size());
+    }
+
+    @Test
+    public void failedRecordIsNotApplied() throws Exception {
+        // The journal cannot be created: its folder is a file
+        final File file = new File(new File(folder, "not-a-folder"), ResendJournal.JOURNAL_FILE);
+        FileUtils.writeStringToFile(file.getParentFile(), "");
+        final ResendJournal journal = new ResendJournal(file);
+
+        try{
+            journal.enqueue("project", 1, ".module-1.0-POST_MODULE-to-resend", action(GrapesNotification.NotificationType.POST_MODULE));
+            fail("The failure should have been reported");
+        } catch (IOException e){
+            assertEquals(0, journal.size());
+        }
+    }
+
+    private static ResendBuildAction action(final GrapesNotification.NotificationType type) {
+        return new ResendBuildAction(type, null, "module", "1.0");
+    }
+}
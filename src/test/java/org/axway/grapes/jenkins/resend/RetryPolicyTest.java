@@ -0,0 +1,26 @@
+package org.axway.grapes.jenkins.resend;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayDoublesAtEachAttempt() {
+        assertEquals(RetryPolicy.BASE_DELAY, RetryPolicy.getDelay(1, 1.0));
+        assertEquals(RetryPolicy.BASE_DELAY * 2, RetryPolicy.getDelay(2, 1.0));
+        assertEquals(RetryPolicy.BASE_DELAY * 4, RetryPolicy.getDelay(3, 1.0));
+    }
+
+    @Test
+    public void jitterRemovesUpToHalfOfTheDelay() {
+        assertEquals(RetryPolicy.BASE_DELAY * 2, RetryPolicy.getDelay(3, 0.0));
+    }
+
+    @Test
+    public void delayIsCapped() {
+        assertEquals(RetryPolicy.MAX_DELAY, RetryPolicy.getDelay(1000, 1.0));
+        assertEquals(RetryPolicy.MAX_DELAY / 2, RetryPolicy.getDelay(1000, 0.0));
+    }
+}